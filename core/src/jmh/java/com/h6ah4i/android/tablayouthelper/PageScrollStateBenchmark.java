@@ -0,0 +1,70 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a drag gesture (drag, settle, idle) with scroll events in between.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageScrollStateBenchmark {
+    private static final int SCROLL_EVENTS_PER_STATE = 16;
+
+    private final PageScrollStateTracker mTracker = new PageScrollStateTracker();
+
+    @Benchmark
+    public int dragGesture() {
+        int updates = 0;
+
+        mTracker.onPageScrollStateChanged(PageScrollStateTracker.SCROLL_STATE_DRAGGING);
+        updates += scroll();
+        mTracker.onPageScrollStateChanged(PageScrollStateTracker.SCROLL_STATE_SETTLING);
+        updates += scroll();
+        mTracker.onPageScrollStateChanged(PageScrollStateTracker.SCROLL_STATE_IDLE);
+        if (mTracker.shouldUpdateIndicatorOnPageSelected()) {
+            updates++;
+        }
+
+        return updates;
+    }
+
+    private int scroll() {
+        int updates = 0;
+        for (int i = 0; i < SCROLL_EVENTS_PER_STATE; i++) {
+            if (mTracker.shouldUpdateScrollPosition() && mTracker.shouldUpdateText()) {
+                updates++;
+            }
+        }
+        return updates;
+    }
+}
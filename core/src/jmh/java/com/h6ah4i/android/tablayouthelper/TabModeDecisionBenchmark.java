@@ -0,0 +1,105 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of tab mode decisions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TabModeDecisionBenchmark {
+    private static final int AVAILABLE_WIDTH = 1080;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int tabCount;
+
+    private int[] mTabWidths;
+    private TabModeDecisionEngine mEngine;
+    private TabWidthStats mStats;
+    private int[] mHandles;
+    private int mGeneration;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+
+        mTabWidths = new int[tabCount];
+        mHandles = new int[tabCount];
+        mStats = new TabWidthStats();
+        for (int i = 0; i < tabCount; i++) {
+            mTabWidths[i] = 160 + random.nextInt(200);
+            mHandles[i] = mStats.add(mTabWidths[i]);
+        }
+
+        mEngine = new TabModeDecisionEngine();
+        mEngine.setHysteresis(48);
+    }
+
+    /**
+     * Full walk over all tab widths (no cached aggregates).
+     */
+    @Benchmark
+    public int fullWalk() {
+        return mEngine.determineTabMode(AVAILABLE_WIDTH, mTabWidths, tabCount, ++mGeneration);
+    }
+
+    /**
+     * One tab has been changed; aggregates are updated incrementally.
+     */
+    @Benchmark
+    public int incremental() {
+        int index = mIndex;
+        mIndex = (index + 1) % tabCount;
+
+        mStats.remove(mHandles[index]);
+        mHandles[index] = mStats.add(mTabWidths[index]);
+
+        return mEngine.determineTabMode(AVAILABLE_WIDTH, tabCount, mStats.getSum(), mStats.getMax(), ++mGeneration);
+    }
+
+    /**
+     * Nothing has been changed; the decision is memoized.
+     */
+    @Benchmark
+    public int memoized() {
+        int tabMode = mEngine.findMemoizedTabMode(AVAILABLE_WIDTH, mGeneration);
+        if (tabMode == TabModeDecisionEngine.NO_TAB_MODE) {
+            tabMode = mEngine.determineTabMode(AVAILABLE_WIDTH, mTabWidths, tabCount, mGeneration);
+        }
+        return tabMode;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of reconciling tab keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TabReconcilerBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int tabCount;
+
+    private TabReconciler mReconciler;
+    private ArrayList<Object> mOldKeys;
+    private ArrayList<Object> mUnchangedKeys;
+    private ArrayList<Object> mInsertedKeys;
+    private ArrayList<Object> mMovedKeys;
+    private ArrayList<Object> mShuffledKeys;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+
+        mReconciler = new TabReconciler();
+
+        mOldKeys = new ArrayList<>(tabCount);
+        for (int i = 0; i < tabCount; i++) {
+            mOldKeys.add((long) i);
+        }
+
+        mUnchangedKeys = new ArrayList<>(mOldKeys);
+
+        mInsertedKeys = new ArrayList<>(mOldKeys);
+        mInsertedKeys.add(tabCount / 2, (long) tabCount);
+        mInsertedKeys.remove(0);
+
+        mMovedKeys = new ArrayList<>(mOldKeys);
+        mMovedKeys.add(mMovedKeys.remove(0));
+
+        mShuffledKeys = new ArrayList<>(mOldKeys);
+        Collections.shuffle(mShuffledKeys, random);
+    }
+
+    @Benchmark
+    public int unchanged() {
+        mReconciler.reconcile(mOldKeys, mUnchangedKeys);
+        return mReconciler.getNewCount();
+    }
+
+    @Benchmark
+    public int insertAndRemove() {
+        mReconciler.reconcile(mOldKeys, mInsertedKeys);
+        return mReconciler.getNewCount();
+    }
+
+    @Benchmark
+    public int moveOne() {
+        mReconciler.reconcile(mOldKeys, mMovedKeys);
+        return mReconciler.getNewCount();
+    }
+
+    @Benchmark
+    public int shuffle() {
+        mReconciler.reconcile(mOldKeys, mShuffledKeys);
+        return mReconciler.getNewCount();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+/**
+ * Tracks the drag / settle state of a pager, and tells how page scroll events should be reflected to tabs.
+ */
+class PageScrollStateTracker {
+    // NOTE: same values as ViewPager.SCROLL_STATE_XXX and ViewPager2.SCROLL_STATE_XXX
+    public static final int SCROLL_STATE_IDLE = 0;
+    public static final int SCROLL_STATE_DRAGGING = 1;
+    public static final int SCROLL_STATE_SETTLING = 2;
+
+    private int mPreviousScrollState;
+    private int mScrollState;
+
+    public void onPageScrollStateChanged(int state) {
+        mPreviousScrollState = mScrollState;
+        mScrollState = state;
+    }
+
+    public int getScrollState() {
+        return mScrollState;
+    }
+
+    /**
+     * Gets whether the indicator should follow page scrolls; only while the pager is dragged
+     * or settling after a drag.
+     *
+     * @return True if the scroll position should be updated
+     */
+    public boolean shouldUpdateScrollPosition() {
+        return (mScrollState == SCROLL_STATE_DRAGGING)
+                || ((mScrollState == SCROLL_STATE_SETTLING) && (mPreviousScrollState == SCROLL_STATE_DRAGGING));
+    }
+
+    /**
+     * Gets whether the text selection should be updated along with the scroll position.
+     *
+     * @return True if the text selection should be updated
+     */
+    public boolean shouldUpdateText() {
+        return (mScrollState == SCROLL_STATE_DRAGGING)
+                || (mScrollState == SCROLL_STATE_SETTLING && mPreviousScrollState == SCROLL_STATE_DRAGGING);
+    }
+
+    /**
+     * Gets whether the indicator should be moved when a page is selected.
+     * While the pager is dragged or settling, page scroll events move the indicator.
+     *
+     * @return True if the indicator should be updated
+     */
+    public boolean shouldUpdateIndicatorOnPageSelected() {
+        return mScrollState == SCROLL_STATE_IDLE;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+/**
+ * Decides whether tabs fit in the fixed tab mode, from tab widths only.
+ *
+ * Decisions are memoized per (available width, content generation), so switching back to a known width
+ * does not require measuring tabs again. While hysteresis is enabled, whether the last decision was
+ * {@link #MODE_SCROLLABLE} is also a part of the key. The content generation is supplied by the
+ * caller and has to be changed whenever tab widths may have been changed.
+ */
+class TabModeDecisionEngine {
+    // NOTE: same values as TabLayout.MODE_XXX
+    public static final int MODE_SCROLLABLE = 0;
+    public static final int MODE_FIXED = 1;
+    public static final int NO_TAB_MODE = -1;
+
+    /** Tabs are in the fixed mode, nothing to restore. */
+    public static final int SCROLL_RESTORATION_NONE = 0;
+    /** Tabs were scrollable, restore the previous scroll position. */
+    public static final int SCROLL_RESTORATION_RESTORE_SCROLL_X = 1;
+    /** Tabs have become scrollable, scroll to the selected tab. */
+    public static final int SCROLL_RESTORATION_SCROLL_TO_SELECTED_TAB = 2;
+
+    private static final int MEMO_SIZE = 4;
+
+    private int mHysteresis;
+    private int mLastTabMode = NO_TAB_MODE;
+
+    private final int[] mMemoWidths = new int[MEMO_SIZE];
+    private final int[] mMemoGenerations = new int[MEMO_SIZE];
+    private final boolean[] mMemoRequireExtraSpace = new boolean[MEMO_SIZE];
+    private final int[] mMemoTabModes = new int[MEMO_SIZE];
+    private int mMemoCount;
+    private int mMemoNext;
+
+    public int getHysteresis() {
+        return mHysteresis;
+    }
+
+    /**
+     * Sets the extra space required to switch from {@link #MODE_SCROLLABLE} to {@link #MODE_FIXED}.
+     * Tabs stay in {@link #MODE_FIXED} until they do not fit at all.
+     *
+     * @param hysteresis Extra space in pixels
+     */
+    public void setHysteresis(int hysteresis) {
+        if (mHysteresis != hysteresis) {
+            mHysteresis = hysteresis;
+            mMemoCount = 0;
+        }
+    }
+
+    /**
+     * Gets the last decision.
+     *
+     * @return {@link #MODE_FIXED}, {@link #MODE_SCROLLABLE} or {@link #NO_TAB_MODE}
+     */
+    public int getLastTabMode() {
+        return mLastTabMode;
+    }
+
+    /**
+     * Finds the memoized decision.
+     *
+     * @param availableWidth Available width for tabs
+     * @param generation     Content generation
+     * @return Tab mode, or {@link #NO_TAB_MODE} if tabs have to be measured.
+     */
+    public int findMemoizedTabMode(int availableWidth, int generation) {
+        final boolean requireExtraSpace = requiresExtraSpace();
+        for (int i = 0; i < mMemoCount; i++) {
+            if (mMemoWidths[i] == availableWidth && mMemoGenerations[i] == generation
+                    && mMemoRequireExtraSpace[i] == requireExtraSpace) {
+                mLastTabMode = mMemoTabModes[i];
+                return mLastTabMode;
+            }
+        }
+        return NO_TAB_MODE;
+    }
+
+    /**
+     * Decides the tab mode.
+     *
+     * @param availableWidth Available width for tabs
+     * @param tabWidths      Widths of tabs measured in the scrollable mode
+     * @param tabCount       Number of tabs
+     * @param generation     Content generation
+     * @return {@link #MODE_FIXED} or {@link #MODE_SCROLLABLE}
+     */
+    public int determineTabMode(int availableWidth, int[] tabWidths, int tabCount, int generation) {
+        long stripWidth = 0;
+        int maxTabWidth = 0;
+        for (int i = 0; i < tabCount; i++) {
+            stripWidth += tabWidths[i];
+            maxTabWidth = Math.max(maxTabWidth, tabWidths[i]);
+        }
+        return determineTabMode(availableWidth, tabCount, stripWidth, maxTabWidth, generation);
+    }
+
+    /**
+     * Decides the tab mode.
+     *
+     * @param availableWidth Available width for tabs
+     * @param tabCount       Number of tabs
+     * @param stripWidth     Sum of tab widths measured in the scrollable mode
+     * @param maxTabWidth    Maximum of tab widths measured in the scrollable mode
+     * @param generation     Content generation
+     * @return {@link #MODE_FIXED} or {@link #MODE_SCROLLABLE}
+     */
+    public int determineTabMode(int availableWidth, int tabCount, long stripWidth, int maxTabWidth, int generation) {
+        if (tabCount == 0) {
+            return MODE_FIXED;
+        }
+
+        final boolean requireExtraSpace = requiresExtraSpace();
+        boolean fits = fits(availableWidth, tabCount, stripWidth, maxTabWidth);
+
+        if (fits && requireExtraSpace) {
+            // switching to MODE_FIXED requires extra space, so small changes near the threshold do not flip the mode
+            fits = fits(availableWidth - mHysteresis, tabCount, stripWidth, maxTabWidth);
+        }
+
+        int tabMode = fits ? MODE_FIXED : MODE_SCROLLABLE;
+
+        putMemo(availableWidth, generation, requireExtraSpace, tabMode);
+        mLastTabMode = tabMode;
+
+        return tabMode;
+    }
+
+    /**
+     * Gets how the scroll position should be restored after the tab mode has been adjusted.
+     *
+     * @param prevTabMode Tab mode before the adjustment
+     * @param newTabMode  Tab mode after the adjustment
+     * @return One of SCROLL_RESTORATION_XXX constants
+     */
+    public static int getScrollRestoration(int prevTabMode, int newTabMode) {
+        if (newTabMode == MODE_FIXED) {
+            return SCROLL_RESTORATION_NONE;
+        } else if (prevTabMode == MODE_SCROLLABLE) {
+            return SCROLL_RESTORATION_RESTORE_SCROLL_X;
+        } else {
+            return SCROLL_RESTORATION_SCROLL_TO_SELECTED_TAB;
+        }
+    }
+
+    private static boolean fits(int availableWidth, int tabCount, long stripWidth, int maxTabWidth) {
+        return (stripWidth < availableWidth) && (maxTabWidth < (availableWidth / tabCount));
+    }
+
+    private boolean requiresExtraSpace() {
+        return (mHysteresis > 0) && (mLastTabMode == MODE_SCROLLABLE);
+    }
+
+    private void putMemo(int width, int generation, boolean requireExtraSpace, int tabMode) {
+        int index = mMemoNext;
+        mMemoWidths[index] = width;
+        mMemoGenerations[index] = generation;
+        mMemoRequireExtraSpace[index] = requireExtraSpace;
+        mMemoTabModes[index] = tabMode;
+        mMemoNext = (index + 1) % MEMO_SIZE;
+        mMemoCount = Math.min(mMemoCount + 1, MEMO_SIZE);
+    }
+}
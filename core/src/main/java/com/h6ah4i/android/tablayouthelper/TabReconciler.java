@@ -0,0 +1,222 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes which tabs can be kept in place when the list of tab keys changes.
+ *
+ * Old and new keys are matched by {@link Object#equals(Object)} (duplicated keys are matched in
+ * order). The longest run of matched tabs which keeps its relative order is left untouched, the
+ * other matched tabs are reported as moved, and the remaining ones as removed or inserted.
+ */
+class TabReconciler {
+    public static final int NO_POSITION = -1;
+
+    private int mOldCount;
+    private int mNewCount;
+    private int[] mNewToOld = new int[0];
+    private int[] mOldToNew = new int[0];
+    private boolean[] mNewKept = new boolean[0];
+    private int[] mTailIndices = new int[0];
+    private int[] mPredecessors = new int[0];
+
+    // open addressing hash table of old keys; primitive arrays are reused, so reconciliation does not allocate
+    private int[] mSlotKeys = new int[0];
+    private int[] mSlotHeads = new int[0];
+    private int[] mNextSameKey = new int[0];
+
+    /**
+     * Compares two key lists. Results can be queried until the next call of this method.
+     *
+     * @param oldKeys Keys of the current tabs
+     * @param newKeys Keys of the desired tabs
+     */
+    public void reconcile(List<?> oldKeys, List<?> newKeys) {
+        mOldCount = oldKeys.size();
+        mNewCount = newKeys.size();
+        ensureCapacity(mOldCount, mNewCount);
+
+        // match keys
+        Arrays.fill(mSlotKeys, NO_POSITION);
+        // NOTE: iterated backwards, so duplicated keys are chained in ascending order
+        for (int i = mOldCount - 1; i >= 0; i--) {
+            int slot = findSlot(oldKeys, oldKeys.get(i));
+            if (mSlotKeys[slot] == NO_POSITION) {
+                mSlotKeys[slot] = i;
+                mNextSameKey[i] = NO_POSITION;
+            } else {
+                mNextSameKey[i] = mSlotHeads[slot];
+            }
+            mSlotHeads[slot] = i;
+            mOldToNew[i] = NO_POSITION;
+        }
+        for (int i = 0; i < mNewCount; i++) {
+            int oldPosition = NO_POSITION;
+            if (mOldCount > 0) {
+                int slot = findSlot(oldKeys, newKeys.get(i));
+                if (mSlotKeys[slot] != NO_POSITION) {
+                    oldPosition = mSlotHeads[slot];
+                    if (oldPosition != NO_POSITION) {
+                        mSlotHeads[slot] = mNextSameKey[oldPosition];
+                    }
+                }
+            }
+            if (oldPosition != NO_POSITION) {
+                mNewToOld[i] = oldPosition;
+                mOldToNew[oldPosition] = i;
+            } else {
+                mNewToOld[i] = NO_POSITION;
+            }
+            mNewKept[i] = false;
+        }
+
+        findLongestIncreasingRun();
+    }
+
+    public int getOldCount() {
+        return mOldCount;
+    }
+
+    public int getNewCount() {
+        return mNewCount;
+    }
+
+    /**
+     * Gets the position of the matched old tab.
+     *
+     * @param newPosition Position in the new list
+     * @return Position in the old list, or {@link #NO_POSITION} if the tab has to be created.
+     */
+    public int getOldPosition(int newPosition) {
+        return mNewToOld[newPosition];
+    }
+
+    /**
+     * Gets the position of the matched new tab.
+     *
+     * @param oldPosition Position in the old list
+     * @return Position in the new list, or {@link #NO_POSITION} if the tab has been removed.
+     */
+    public int getNewPosition(int oldPosition) {
+        return mOldToNew[oldPosition];
+    }
+
+    /**
+     * Gets whether the tab can stay in the tab layout as is.
+     *
+     * @param newPosition Position in the new list
+     * @return True if the tab is kept, false if it has to be inserted.
+     */
+    public boolean isKept(int newPosition) {
+        return mNewKept[newPosition];
+    }
+
+    /**
+     * Gets whether the old tab can stay in the tab layout as is.
+     *
+     * @param oldPosition Position in the old list
+     * @return True if the tab is kept, false if it has to be removed.
+     */
+    public boolean isOldKept(int oldPosition) {
+        int newPosition = mOldToNew[oldPosition];
+        return (newPosition != NO_POSITION) && mNewKept[newPosition];
+    }
+
+    private void findLongestIncreasingRun() {
+        // O(n log n) longest increasing subsequence over the matched old positions
+        int length = 0;
+
+        for (int i = 0; i < mNewCount; i++) {
+            int oldPosition = mNewToOld[i];
+            if (oldPosition == NO_POSITION) {
+                continue;
+            }
+
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (mNewToOld[mTailIndices[mid]] < oldPosition) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            mPredecessors[i] = (lo > 0) ? mTailIndices[lo - 1] : NO_POSITION;
+            mTailIndices[lo] = i;
+            if (lo == length) {
+                length++;
+            }
+        }
+
+        int i = (length > 0) ? mTailIndices[length - 1] : NO_POSITION;
+        while (i != NO_POSITION) {
+            mNewKept[i] = true;
+            i = mPredecessors[i];
+        }
+    }
+
+    /**
+     * Finds the slot of the key, or the empty slot where the key should be stored.
+     */
+    private int findSlot(List<?> oldKeys, Object key) {
+        final int mask = mSlotKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int keyIndex = mSlotKeys[slot];
+            if (keyIndex == NO_POSITION || equals(oldKeys.get(keyIndex), key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return (a == null) ? (b == null) : a.equals(b);
+    }
+
+    private void ensureCapacity(int oldCount, int newCount) {
+        if (mOldToNew.length < oldCount) {
+            mOldToNew = new int[oldCount];
+            mNextSameKey = new int[oldCount];
+        }
+        // keep the load factor of the hash table at most 0.5
+        if (mSlotKeys.length < oldCount * 2) {
+            int capacity = Integer.highestOneBit(Math.max(oldCount * 2 - 1, 1)) << 1;
+            mSlotKeys = new int[capacity];
+            mSlotHeads = new int[capacity];
+        }
+        if (mNewToOld.length < newCount) {
+            mNewToOld = new int[newCount];
+            mNewKept = new boolean[newCount];
+            mTailIndices = new int[newCount];
+            mPredecessors = new int[newCount];
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import java.util.Arrays;
+
+/**
+ * Maintains the sum and the maximum of tab widths.
+ *
+ * Each width is identified by the handle returned from {@link #add(int)}, and can be removed in
+ * O(log n) time. The maximum is kept in an indexed binary max-heap.
+ */
+class TabWidthStats {
+    public static final int NO_HANDLE = -1;
+
+    private int[] mWidths = new int[16];        // indexed by handle
+    private int[] mHeapIndices = new int[16];   // indexed by handle
+    private int[] mHeap = new int[16];          // handles
+    private int mHeapSize;
+    private int[] mFreeHandles = new int[16];
+    private int mFreeCount;
+    private int mHandleCount;
+    private long mSum;
+
+    public int getCount() {
+        return mHeapSize;
+    }
+
+    public long getSum() {
+        return mSum;
+    }
+
+    public int getMax() {
+        return (mHeapSize > 0) ? mWidths[mHeap[0]] : 0;
+    }
+
+    /**
+     * Adds a width.
+     *
+     * @param width Width
+     * @return Handle of the width
+     */
+    public int add(int width) {
+        int handle;
+        if (mFreeCount > 0) {
+            handle = mFreeHandles[--mFreeCount];
+        } else {
+            handle = mHandleCount++;
+            if (handle == mWidths.length) {
+                int newLength = handle * 2;
+                mWidths = Arrays.copyOf(mWidths, newLength);
+                mHeapIndices = Arrays.copyOf(mHeapIndices, newLength);
+                mHeap = Arrays.copyOf(mHeap, newLength);
+                mFreeHandles = Arrays.copyOf(mFreeHandles, newLength);
+            }
+        }
+
+        mWidths[handle] = width;
+        mSum += width;
+
+        int index = mHeapSize++;
+        mHeap[index] = handle;
+        mHeapIndices[handle] = index;
+        siftUp(index);
+
+        return handle;
+    }
+
+    /**
+     * Removes a width.
+     *
+     * @param handle Handle returned by {@link #add(int)}
+     */
+    public void remove(int handle) {
+        int index = mHeapIndices[handle];
+
+        mSum -= mWidths[handle];
+
+        int last = --mHeapSize;
+        if (index != last) {
+            int lastHandle = mHeap[last];
+            mHeap[index] = lastHandle;
+            mHeapIndices[lastHandle] = index;
+            siftDown(index);
+            siftUp(mHeapIndices[lastHandle]);
+        }
+
+        mFreeHandles[mFreeCount++] = handle;
+    }
+
+    public void clear() {
+        mHeapSize = 0;
+        mFreeCount = 0;
+        mHandleCount = 0;
+        mSum = 0;
+    }
+
+    private void siftUp(int index) {
+        final int[] heap = mHeap;
+        final int handle = heap[index];
+        final int width = mWidths[handle];
+
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            int parentHandle = heap[parent];
+            if (mWidths[parentHandle] >= width) {
+                break;
+            }
+            heap[index] = parentHandle;
+            mHeapIndices[parentHandle] = index;
+            index = parent;
+        }
+
+        heap[index] = handle;
+        mHeapIndices[handle] = index;
+    }
+
+    private void siftDown(int index) {
+        final int[] heap = mHeap;
+        final int handle = heap[index];
+        final int width = mWidths[handle];
+        final int size = mHeapSize;
+
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && mWidths[heap[child + 1]] > mWidths[heap[child]]) {
+                child++;
+            }
+            int childHandle = heap[child];
+            if (mWidths[childHandle] <= width) {
+                break;
+            }
+            heap[index] = childHandle;
+            mHeapIndices[childHandle] = index;
+            index = child;
+        }
+
+        heap[index] = handle;
+        mHeapIndices[handle] = index;
+    }
+}
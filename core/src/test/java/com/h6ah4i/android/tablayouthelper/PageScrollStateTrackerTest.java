@@ -0,0 +1,80 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import org.junit.Test;
+
+import static com.h6ah4i.android.tablayouthelper.PageScrollStateTracker.SCROLL_STATE_DRAGGING;
+import static com.h6ah4i.android.tablayouthelper.PageScrollStateTracker.SCROLL_STATE_IDLE;
+import static com.h6ah4i.android.tablayouthelper.PageScrollStateTracker.SCROLL_STATE_SETTLING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PageScrollStateTrackerTest {
+    private final PageScrollStateTracker mTracker = new PageScrollStateTracker();
+
+    @Test
+    public void idle() {
+        assertEquals(SCROLL_STATE_IDLE, mTracker.getScrollState());
+        assertFalse(mTracker.shouldUpdateScrollPosition());
+        assertFalse(mTracker.shouldUpdateText());
+        assertTrue(mTracker.shouldUpdateIndicatorOnPageSelected());
+    }
+
+    @Test
+    public void dragAndSettle() {
+        mTracker.onPageScrollStateChanged(SCROLL_STATE_DRAGGING);
+
+        assertEquals(SCROLL_STATE_DRAGGING, mTracker.getScrollState());
+        assertTrue(mTracker.shouldUpdateScrollPosition());
+        assertTrue(mTracker.shouldUpdateText());
+        assertFalse(mTracker.shouldUpdateIndicatorOnPageSelected());
+
+        mTracker.onPageScrollStateChanged(SCROLL_STATE_SETTLING);
+
+        assertTrue(mTracker.shouldUpdateScrollPosition());
+        assertTrue(mTracker.shouldUpdateText());
+        assertFalse(mTracker.shouldUpdateIndicatorOnPageSelected());
+
+        mTracker.onPageScrollStateChanged(SCROLL_STATE_IDLE);
+
+        assertFalse(mTracker.shouldUpdateScrollPosition());
+        assertFalse(mTracker.shouldUpdateText());
+        assertTrue(mTracker.shouldUpdateIndicatorOnPageSelected());
+    }
+
+    @Test
+    public void settleWithoutDrag() {
+        // e.g. ViewPager.setCurrentItem(item, true); the selection moves the indicator instead
+        mTracker.onPageScrollStateChanged(SCROLL_STATE_SETTLING);
+
+        assertFalse(mTracker.shouldUpdateScrollPosition());
+        assertFalse(mTracker.shouldUpdateText());
+        assertFalse(mTracker.shouldUpdateIndicatorOnPageSelected());
+    }
+
+    @Test
+    public void dragAgainWhileSettling() {
+        mTracker.onPageScrollStateChanged(SCROLL_STATE_SETTLING);
+        mTracker.onPageScrollStateChanged(SCROLL_STATE_DRAGGING);
+
+        assertTrue(mTracker.shouldUpdateScrollPosition());
+        assertTrue(mTracker.shouldUpdateText());
+        assertFalse(mTracker.shouldUpdateIndicatorOnPageSelected());
+    }
+}
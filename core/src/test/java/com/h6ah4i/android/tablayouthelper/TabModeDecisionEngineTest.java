@@ -0,0 +1,158 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import org.junit.Test;
+
+import static com.h6ah4i.android.tablayouthelper.TabModeDecisionEngine.MODE_FIXED;
+import static com.h6ah4i.android.tablayouthelper.TabModeDecisionEngine.MODE_SCROLLABLE;
+import static com.h6ah4i.android.tablayouthelper.TabModeDecisionEngine.NO_TAB_MODE;
+import static org.junit.Assert.assertEquals;
+
+public class TabModeDecisionEngineTest {
+    private static final int GENERATION = 1;
+
+    // 4 tabs of 100px; they fit if each of them gets more than 100px (404px or more)
+    private static final int[] TAB_WIDTHS = {100, 100, 100, 100};
+    private static final int NARROW = 400;
+    private static final int WIDE = 480;
+    private static final int HYSTERESIS = 100;
+
+    private final TabModeDecisionEngine mEngine = new TabModeDecisionEngine();
+
+    @Test
+    public void noTabs() {
+        assertEquals(MODE_FIXED, mEngine.determineTabMode(100, new int[0], 0, GENERATION));
+    }
+
+    @Test
+    public void fitsIfSumAndWidestTabFit() {
+        assertEquals(MODE_FIXED, determine(404));
+        assertEquals(MODE_SCROLLABLE, determine(403));
+        assertEquals(MODE_SCROLLABLE, determine(NARROW));
+    }
+
+    @Test
+    public void widestTabMustFitInEqualShare() {
+        // the sum fits, but tabs get 1/3 of the width each in MODE_FIXED
+        assertEquals(MODE_SCROLLABLE, mEngine.determineTabMode(600, new int[]{50, 50, 200}, 3, GENERATION));
+        assertEquals(MODE_FIXED, mEngine.determineTabMode(603, new int[]{50, 50, 200}, 3, GENERATION));
+    }
+
+    @Test
+    public void sumAndMaxOverloadMatchesArrayOverload() {
+        TabModeDecisionEngine other = new TabModeDecisionEngine();
+        for (int width = 300; width < 500; width += 7) {
+            assertEquals(determine(width), other.determineTabMode(width, TAB_WIDTHS.length, 400, 100, GENERATION));
+        }
+    }
+
+    @Test
+    public void hysteresisRequiresExtraSpaceToSwitchToFixed() {
+        mEngine.setHysteresis(HYSTERESIS);
+
+        // no previous decision, no extra space required
+        assertEquals(MODE_FIXED, determine(WIDE));
+
+        assertEquals(MODE_SCROLLABLE, determine(NARROW));
+
+        // back to the wide width, but 480 - 100 is not enough
+        assertEquals(MODE_SCROLLABLE, determine(WIDE));
+        assertEquals(MODE_FIXED, determine(404 + HYSTERESIS));
+        assertEquals(MODE_FIXED, determine(WIDE));
+    }
+
+    @Test
+    public void hysteresisKeepsFixedUntilTabsDoNotFit() {
+        mEngine.setHysteresis(HYSTERESIS);
+
+        assertEquals(MODE_FIXED, determine(WIDE));
+        assertEquals(MODE_FIXED, determine(404));
+        assertEquals(MODE_SCROLLABLE, determine(403));
+        assertEquals(MODE_SCROLLABLE, determine(NARROW));
+    }
+
+    @Test
+    public void memoizedPerWidthAndGeneration() {
+        assertEquals(NO_TAB_MODE, mEngine.findMemoizedTabMode(WIDE, GENERATION));
+
+        assertEquals(MODE_FIXED, determine(WIDE));
+
+        assertEquals(MODE_FIXED, mEngine.findMemoizedTabMode(WIDE, GENERATION));
+        assertEquals(NO_TAB_MODE, mEngine.findMemoizedTabMode(WIDE, GENERATION + 1));
+        assertEquals(NO_TAB_MODE, mEngine.findMemoizedTabMode(NARROW, GENERATION));
+    }
+
+    @Test
+    public void memoIsHitWhenSwitchingBackAndForth() {
+        // the decision does not depend on the last one without hysteresis, so both widths stay memoized
+        assertEquals(MODE_SCROLLABLE, determine(NARROW));
+        assertEquals(MODE_FIXED, determine(WIDE));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(MODE_SCROLLABLE, mEngine.findMemoizedTabMode(NARROW, GENERATION));
+            assertEquals(MODE_FIXED, mEngine.findMemoizedTabMode(WIDE, GENERATION));
+        }
+    }
+
+    @Test
+    public void memoDistinguishesExtraSpaceRequirement() {
+        mEngine.setHysteresis(HYSTERESIS);
+
+        // decided without extra space
+        assertEquals(MODE_FIXED, determine(WIDE));
+        assertEquals(MODE_SCROLLABLE, determine(NARROW));
+
+        // the memoized FIXED decision does not apply while extra space is required
+        assertEquals(NO_TAB_MODE, mEngine.findMemoizedTabMode(WIDE, GENERATION));
+        assertEquals(MODE_SCROLLABLE, determine(WIDE));
+        assertEquals(MODE_SCROLLABLE, mEngine.findMemoizedTabMode(WIDE, GENERATION));
+    }
+
+    @Test
+    public void memoIsClearedWhenHysteresisChanges() {
+        assertEquals(MODE_FIXED, determine(WIDE));
+
+        mEngine.setHysteresis(HYSTERESIS);
+
+        assertEquals(NO_TAB_MODE, mEngine.findMemoizedTabMode(WIDE, GENERATION));
+    }
+
+    @Test
+    public void memoizedDecisionUpdatesLastTabMode() {
+        assertEquals(MODE_SCROLLABLE, determine(NARROW));
+        assertEquals(MODE_FIXED, determine(WIDE));
+
+        mEngine.findMemoizedTabMode(NARROW, GENERATION);
+
+        assertEquals(MODE_SCROLLABLE, mEngine.getLastTabMode());
+    }
+
+    @Test
+    public void scrollRestoration() {
+        assertEquals(TabModeDecisionEngine.SCROLL_RESTORATION_NONE,
+                TabModeDecisionEngine.getScrollRestoration(MODE_SCROLLABLE, MODE_FIXED));
+        assertEquals(TabModeDecisionEngine.SCROLL_RESTORATION_RESTORE_SCROLL_X,
+                TabModeDecisionEngine.getScrollRestoration(MODE_SCROLLABLE, MODE_SCROLLABLE));
+        assertEquals(TabModeDecisionEngine.SCROLL_RESTORATION_SCROLL_TO_SELECTED_TAB,
+                TabModeDecisionEngine.getScrollRestoration(MODE_FIXED, MODE_SCROLLABLE));
+    }
+
+    private int determine(int availableWidth) {
+        return mEngine.determineTabMode(availableWidth, TAB_WIDTHS, TAB_WIDTHS.length, GENERATION);
+    }
+}
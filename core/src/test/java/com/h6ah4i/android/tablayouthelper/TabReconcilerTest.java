@@ -0,0 +1,199 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TabReconcilerTest {
+    private final TabReconciler mReconciler = new TabReconciler();
+
+    @Test
+    public void unchanged() {
+        reconcile(keys("a", "b", "c"), keys("a", "b", "c"));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(mReconciler.isKept(i));
+            assertTrue(mReconciler.isOldKept(i));
+            assertEquals(i, mReconciler.getOldPosition(i));
+            assertEquals(i, mReconciler.getNewPosition(i));
+        }
+    }
+
+    @Test
+    public void insertAndRemove() {
+        reconcile(keys("a", "b", "c"), keys("x", "a", "c"));
+
+        assertEquals(TabReconciler.NO_POSITION, mReconciler.getOldPosition(0));
+        assertFalse(mReconciler.isKept(0));
+        assertEquals(0, mReconciler.getOldPosition(1));
+        assertTrue(mReconciler.isKept(1));
+        assertEquals(2, mReconciler.getOldPosition(2));
+        assertTrue(mReconciler.isKept(2));
+
+        assertEquals(TabReconciler.NO_POSITION, mReconciler.getNewPosition(1));
+        assertFalse(mReconciler.isOldKept(1));
+    }
+
+    @Test
+    public void moveOne() {
+        reconcile(keys("a", "b", "c", "d"), keys("d", "a", "b", "c"));
+
+        // the longest run in order is kept, the other tab is moved
+        assertFalse(mReconciler.isKept(0));
+        assertEquals(3, mReconciler.getOldPosition(0));
+        assertEquals(0, mReconciler.getNewPosition(3));
+        assertFalse(mReconciler.isOldKept(3));
+        for (int i = 1; i < 4; i++) {
+            assertTrue(mReconciler.isKept(i));
+        }
+    }
+
+    @Test
+    public void duplicatedKeysAreMatchedInOrder() {
+        reconcile(keys("a", "x", "a", "x"), keys("x", "a", "x", "a"));
+
+        assertEquals(1, mReconciler.getOldPosition(0));
+        assertEquals(0, mReconciler.getOldPosition(1));
+        assertEquals(3, mReconciler.getOldPosition(2));
+        assertEquals(2, mReconciler.getOldPosition(3));
+    }
+
+    @Test
+    public void nullKeys() {
+        reconcile(keys("a", null, "b"), keys(null, "b"));
+
+        assertEquals(1, mReconciler.getOldPosition(0));
+        assertEquals(2, mReconciler.getOldPosition(1));
+        assertEquals(TabReconciler.NO_POSITION, mReconciler.getNewPosition(0));
+    }
+
+    @Test
+    public void emptyLists() {
+        reconcile(keys(), keys("a", "b"));
+        assertEquals(TabReconciler.NO_POSITION, mReconciler.getOldPosition(0));
+        assertEquals(TabReconciler.NO_POSITION, mReconciler.getOldPosition(1));
+
+        reconcile(keys("a", "b"), keys());
+        assertEquals(0, mReconciler.getNewCount());
+        assertEquals(TabReconciler.NO_POSITION, mReconciler.getNewPosition(0));
+        assertEquals(TabReconciler.NO_POSITION, mReconciler.getNewPosition(1));
+    }
+
+    @Test
+    public void randomChangesAreConsistent() {
+        final Random random = new Random(1);
+
+        for (int iteration = 0; iteration < 500; iteration++) {
+            List<Object> oldKeys = randomKeys(random, random.nextInt(30));
+            List<Object> newKeys = randomKeys(random, random.nextInt(30));
+
+            // reuses the same instance, so results must not depend on the previous call
+            reconcile(oldKeys, newKeys);
+
+            boolean[] oldMatched = new boolean[oldKeys.size()];
+            int lastKeptOldPosition = -1;
+            int keptCount = 0;
+
+            for (int i = 0; i < newKeys.size(); i++) {
+                int oldPosition = mReconciler.getOldPosition(i);
+                if (oldPosition == TabReconciler.NO_POSITION) {
+                    assertFalse(mReconciler.isKept(i));
+                    continue;
+                }
+
+                assertEquals(newKeys.get(i), oldKeys.get(oldPosition));
+                assertFalse(oldMatched[oldPosition]);
+                oldMatched[oldPosition] = true;
+                assertEquals(i, mReconciler.getNewPosition(oldPosition));
+                assertEquals(mReconciler.isKept(i), mReconciler.isOldKept(oldPosition));
+
+                if (mReconciler.isKept(i)) {
+                    // kept tabs keep their relative order
+                    assertTrue(oldPosition > lastKeptOldPosition);
+                    lastKeptOldPosition = oldPosition;
+                    keptCount++;
+                }
+            }
+
+            for (int i = 0; i < oldKeys.size(); i++) {
+                if (!oldMatched[i]) {
+                    assertEquals(TabReconciler.NO_POSITION, mReconciler.getNewPosition(i));
+                    // an unmatched old key must not be present in the unmatched part of the new keys
+                    assertTrue(countOf(oldKeys, oldKeys.get(i)) > countOf(newKeys, oldKeys.get(i)));
+                }
+            }
+
+            // as many tabs as possible are kept
+            assertEquals(longestIncreasingRun(newKeys.size()), keptCount);
+        }
+    }
+
+    private void reconcile(List<Object> oldKeys, List<Object> newKeys) {
+        mReconciler.reconcile(oldKeys, newKeys);
+
+        assertEquals(oldKeys.size(), mReconciler.getOldCount());
+        assertEquals(newKeys.size(), mReconciler.getNewCount());
+    }
+
+    private int longestIncreasingRun(int newCount) {
+        // O(n^2) reference implementation over the matched old positions
+        int[] lengths = new int[newCount];
+        int longest = 0;
+        for (int i = 0; i < newCount; i++) {
+            int oldPosition = mReconciler.getOldPosition(i);
+            if (oldPosition == TabReconciler.NO_POSITION) {
+                continue;
+            }
+            lengths[i] = 1;
+            for (int j = 0; j < i; j++) {
+                int prevOldPosition = mReconciler.getOldPosition(j);
+                if (prevOldPosition != TabReconciler.NO_POSITION && prevOldPosition < oldPosition) {
+                    lengths[i] = Math.max(lengths[i], lengths[j] + 1);
+                }
+            }
+            longest = Math.max(longest, lengths[i]);
+        }
+        return longest;
+    }
+
+    private static List<Object> keys(Object... keys) {
+        return new ArrayList<>(Arrays.asList(keys));
+    }
+
+    private static List<Object> randomKeys(Random random, int count) {
+        List<Object> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // small key space, so keys are often shared and duplicated
+            keys.add("key-" + random.nextInt(20));
+        }
+        return keys;
+    }
+
+    private static int countOf(List<Object> keys, Object key) {
+        return Collections.frequency(keys, key);
+    }
+}
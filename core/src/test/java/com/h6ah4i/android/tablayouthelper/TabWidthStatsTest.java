@@ -0,0 +1,114 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TabWidthStatsTest {
+    private final TabWidthStats mStats = new TabWidthStats();
+
+    @Test
+    public void empty() {
+        assertEquals(0, mStats.getCount());
+        assertEquals(0, mStats.getSum());
+        assertEquals(0, mStats.getMax());
+    }
+
+    @Test
+    public void addAndRemove() {
+        int a = mStats.add(30);
+        int b = mStats.add(50);
+        int c = mStats.add(20);
+
+        assertEquals(3, mStats.getCount());
+        assertEquals(100, mStats.getSum());
+        assertEquals(50, mStats.getMax());
+
+        mStats.remove(b);
+        assertEquals(50, mStats.getSum());
+        assertEquals(30, mStats.getMax());
+
+        mStats.remove(a);
+        mStats.remove(c);
+        assertEquals(0, mStats.getCount());
+        assertEquals(0, mStats.getSum());
+        assertEquals(0, mStats.getMax());
+    }
+
+    @Test
+    public void clear() {
+        for (int i = 0; i < 100; i++) {
+            mStats.add(i);
+        }
+
+        mStats.clear();
+
+        assertEquals(0, mStats.getCount());
+        assertEquals(0, mStats.getSum());
+        assertEquals(0, mStats.getMax());
+
+        mStats.add(10);
+        assertEquals(10, mStats.getMax());
+    }
+
+    @Test
+    public void sumDoesNotOverflow() {
+        mStats.add(Integer.MAX_VALUE);
+        mStats.add(Integer.MAX_VALUE);
+
+        assertEquals(2L * Integer.MAX_VALUE, mStats.getSum());
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        final Random random = new Random(1);
+        final List<Integer> handles = new ArrayList<>();
+        final List<Integer> widths = new ArrayList<>();
+
+        for (int i = 0; i < 10000; i++) {
+            // grows the heap beyond its initial capacity, then shrinks and grows again
+            boolean add = handles.isEmpty() || random.nextInt(100) < ((i / 2000) % 2 == 0 ? 70 : 30);
+
+            if (add) {
+                int width = random.nextInt(500);
+                handles.add(mStats.add(width));
+                widths.add(width);
+            } else {
+                int index = random.nextInt(handles.size());
+                mStats.remove(handles.remove(index));
+                widths.remove(index);
+            }
+
+            long sum = 0;
+            int max = 0;
+            for (int width : widths) {
+                sum += width;
+                max = Math.max(max, width);
+            }
+
+            assertEquals(widths.size(), mStats.getCount());
+            assertEquals(sum, mStats.getSum());
+            assertEquals(max, mStats.getMax());
+        }
+    }
+}
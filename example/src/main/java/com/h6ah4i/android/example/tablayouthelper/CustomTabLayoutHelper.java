@@ -52,15 +52,15 @@ public class CustomTabLayoutHelper extends TabLayoutHelper {
     }
 
     @Override
-    protected TabLayout.Tab onCreateTab(TabLayout tabLayout, PagerAdapter adapter, int position) {
-        // NOTE: should not call super method here!
-
-        TabLayout.Tab tab = tabLayout.newTab();
-        tab.setText(adapter.getPageTitle(position));
-        View v = LayoutInflater.from(tabLayout.getContext()).inflate(R.layout.custom_tab, tabLayout, false);
-        tab.setCustomView(v);
+    protected View onCreateTabView(TabLayout tabLayout, PagerAdapter adapter, int position) {
+        // NOTE: this view is recycled, so position specific contents are set in onUpdateTab()
+        return LayoutInflater.from(tabLayout.getContext()).inflate(R.layout.custom_tab, tabLayout, false);
+    }
 
-        return tab;
+    @Override
+    protected int getTabViewLayoutResId(PagerAdapter adapter, int position) {
+        // used instead of onCreateTabView() while async tab view inflation is enabled
+        return R.layout.custom_tab;
     }
 
     @Override
@@ -77,6 +77,12 @@ public class CustomTabLayoutHelper extends TabLayoutHelper {
         v.setBackgroundColor(getTabColor(position));
     }
 
+    @Override
+    protected boolean isTabContentsChanged(TabLayout.Tab tab) {
+        // only the background color depends on position, the width of the custom view depends on text only
+        return isTabBoundContentsChanged(tab);
+    }
+
     private static int getTabColor(int position) {
         return TAB_COLOR_MAP[position % TAB_COLOR_MAP.length];
     }
@@ -119,6 +119,12 @@ public class TabLayoutDemoFragment extends Fragment {
         // [Optional] enables auto tab mode adjustment
         mTabLayoutHelper.setAutoAdjustTabModeEnabled(true);
 
+        // [Optional] enables tab reconciliation (tabs are matched by TabLayoutDemoPagerAdapter.getTabId())
+        mTabLayoutHelper.setTabReconciliationEnabled(true);
+
+        // [Optional] inflates custom tab views on a background thread (see CustomTabLayoutHelper.getTabViewLayoutResId())
+        mTabLayoutHelper.setAsyncTabViewInflationEnabled(true);
+
         // set OnTabSelectedListener
         mTabLayout.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
             private void showMessage(String message) {
@@ -26,10 +26,12 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
+import com.h6ah4i.android.tablayouthelper.TabLayoutHelper;
+
 /**
  * Created by hasegawa on 8/5/15.
  */
-public class TabLayoutDemoPagerAdapter extends FragmentPagerAdapter {
+public class TabLayoutDemoPagerAdapter extends FragmentPagerAdapter implements TabLayoutHelper.TabIdProvider {
     private int mPageCount;
 
     public TabLayoutDemoPagerAdapter(FragmentManager fm) {
@@ -53,6 +55,11 @@ public class TabLayoutDemoPagerAdapter extends FragmentPagerAdapter {
         return Integer.toString(position);
     }
 
+    @Override
+    public long getTabId(int position) {
+        return position;
+    }
+
     public void addPage() {
         mPageCount += 1;
         notifyDataSetChanged();
@@ -0,0 +1,133 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.app.Activity;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.viewpager.widget.ViewPager;
+
+import com.google.android.material.tabs.TabLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Method;
+
+/**
+ * Compares tab selection through {@link TabLayoutHelper.FixedTabLayoutOnPageChangeListener#onPageSelected(int)},
+ * which delegates to {@link TabLayout.TabLayoutOnPageChangeListener}, with the former implementation
+ * (private TabLayout.selectTab(Tab, boolean) invoked via reflection with boxed arguments every time).
+ */
+@RunWith(AndroidJUnit4.class)
+public class SelectTabBenchmark {
+    private static final String TAG = "SelectTabBenchmark";
+    private static final int TAB_COUNT = 16;
+    private static final int WARMUP_ITERATIONS = 1000;
+    private static final int ITERATIONS = 20000;
+
+    private ActivityScenario<Activity> mScenario;
+    private TabLayout mTabLayout;
+
+    @Before
+    public void setUp() {
+        mScenario = ActivityScenario.launch(Activity.class);
+        mScenario.onActivity(new ActivityScenario.ActivityAction<Activity>() {
+            @Override
+            public void perform(Activity activity) {
+                mTabLayout = new TabLayout(new ContextThemeWrapper(activity, R.style.Theme_AppCompat_Light));
+                for (int i = 0; i < TAB_COUNT; i++) {
+                    mTabLayout.addTab(mTabLayout.newTab().setText(Integer.toString(i)), false);
+                }
+                activity.setContentView(mTabLayout);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mScenario.close();
+        mTabLayout = null;
+    }
+
+    @Test
+    public void selectTabWithoutIndicatorUpdate() {
+        run(false, ViewPager.SCROLL_STATE_DRAGGING);
+    }
+
+    @Test
+    public void selectTabWithIndicatorUpdate() {
+        run(true, ViewPager.SCROLL_STATE_IDLE);
+    }
+
+    private void run(final boolean updateIndicator, final int scrollState) {
+        // NOTE: both implementations run on the main thread, as TabLayout is used in apps
+        mScenario.onActivity(new ActivityScenario.ActivityAction<Activity>() {
+            @Override
+            public void perform(Activity activity) {
+                long legacy;
+                try {
+                    legacy = runLegacy(updateIndicator);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                long current = runCurrent(scrollState);
+
+                Log.i(TAG, "selectTab(updateIndicator = " + updateIndicator + "): legacy = " + legacy
+                        + " ns/op, current = " + current + " ns/op");
+            }
+        });
+    }
+
+    private long runLegacy(boolean updateIndicator) throws Exception {
+        Method method = TabLayout.class.getDeclaredMethod("selectTab", TabLayout.Tab.class, boolean.class);
+        method.setAccessible(true);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            method.invoke(mTabLayout, mTabLayout.getTabAt(i % TAB_COUNT), updateIndicator);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            method.invoke(mTabLayout, mTabLayout.getTabAt(i % TAB_COUNT), updateIndicator);
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private long runCurrent(int scrollState) {
+        // the indicator is updated on page selection in SCROLL_STATE_IDLE only
+        TabLayoutHelper.FixedTabLayoutOnPageChangeListener listener =
+                new TabLayoutHelper.FixedTabLayoutOnPageChangeListener(mTabLayout);
+        listener.onPageScrollStateChanged(scrollState);
+
+        // NOTE: a different page is selected every time, otherwise the listener does nothing
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            listener.onPageSelected(i % TAB_COUNT);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            listener.onPageSelected(i % TAB_COUNT);
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+}
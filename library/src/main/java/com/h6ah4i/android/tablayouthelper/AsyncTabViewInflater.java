@@ -0,0 +1,154 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+
+import com.google.android.material.tabs.TabLayout;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Inflates custom tab views on a background thread, and hands them to the callback on the UI thread.
+ *
+ * {@link AsyncLayoutInflater} blocks the caller once its queue is full, so only a few requests are
+ * passed to it at a time and the rest wait here. Requests cannot be aborted once passed; views of
+ * cancelled requests are still delivered with a null tab so they can be recycled.
+ */
+class AsyncTabViewInflater implements AsyncLayoutInflater.OnInflateFinishedListener {
+    // NOTE: smaller than the queue size of AsyncLayoutInflater (10)
+    private static final int MAX_IN_FLIGHT_REQUESTS = 4;
+
+    interface Callback {
+        /**
+         * Called when a tab view has been inflated.
+         *
+         * @param tab      Tab which requested the view, or null if the request has been cancelled
+         * @param view     Inflated view
+         * @param viewType View type passed to {@link #inflate(TabLayout.Tab, int, int)}
+         */
+        void onTabViewInflated(@Nullable TabLayout.Tab tab, @NonNull View view, int viewType);
+    }
+
+    private final AsyncLayoutInflater mInflater;
+    private final ViewGroup mParent;
+    private Callback mCallback;
+    private final HashMap<TabLayout.Tab, Request> mPendingRequests = new HashMap<>();
+    private final ArrayDeque<Request> mWaitingRequests = new ArrayDeque<>();
+    private final ArrayDeque<Request> mInFlightRequests = new ArrayDeque<>();
+
+    AsyncTabViewInflater(@NonNull ViewGroup parent, @NonNull Callback callback) {
+        mInflater = new AsyncLayoutInflater(parent.getContext());
+        mParent = parent;
+        mCallback = callback;
+    }
+
+    /**
+     * Gets the number of tabs waiting for their views.
+     *
+     * @return Number of pending requests
+     */
+    public int getPendingCount() {
+        return mPendingRequests.size();
+    }
+
+    public boolean isPending(TabLayout.Tab tab) {
+        return mPendingRequests.containsKey(tab);
+    }
+
+    public void inflate(@NonNull TabLayout.Tab tab, @LayoutRes int layoutResId, int viewType) {
+        cancel(tab);
+
+        Request request = new Request(tab, layoutResId, viewType);
+        mPendingRequests.put(tab, request);
+        mWaitingRequests.addLast(request);
+
+        dispatchWaitingRequests();
+    }
+
+    public boolean cancel(TabLayout.Tab tab) {
+        Request request = mPendingRequests.remove(tab);
+        if (request == null) {
+            return false;
+        }
+        // NOTE: removed from the queues when it comes to the head
+        request.mTab = null;
+        return true;
+    }
+
+    public void cancelAll() {
+        for (Request request : mPendingRequests.values()) {
+            request.mTab = null;
+        }
+        mPendingRequests.clear();
+        mWaitingRequests.clear();
+    }
+
+    public void release() {
+        cancelAll();
+        mCallback = null;
+    }
+
+    @Override
+    public void onInflateFinished(@NonNull View view, int resid, @Nullable ViewGroup parent) {
+        // NOTE: AsyncLayoutInflater delivers results in request order
+        Request request = mInFlightRequests.pollFirst();
+        TabLayout.Tab tab = (request != null) ? request.mTab : null;
+        int viewType = (request != null) ? request.mViewType : TabViewPool.NO_VIEW_TYPE;
+
+        if (tab != null) {
+            mPendingRequests.remove(tab);
+        }
+
+        dispatchWaitingRequests();
+
+        if (mCallback != null) {
+            mCallback.onTabViewInflated(tab, view, viewType);
+        }
+    }
+
+    private void dispatchWaitingRequests() {
+        while (mInFlightRequests.size() < MAX_IN_FLIGHT_REQUESTS && !mWaitingRequests.isEmpty()) {
+            Request request = mWaitingRequests.pollFirst();
+            if (request.mTab == null) {
+                // cancelled
+                continue;
+            }
+            mInFlightRequests.addLast(request);
+            mInflater.inflate(request.mLayoutResId, mParent, this);
+        }
+    }
+
+    private static class Request {
+        TabLayout.Tab mTab;
+        final int mLayoutResId;
+        final int mViewType;
+
+        Request(TabLayout.Tab tab, int layoutResId, int viewType) {
+            mTab = tab;
+            mLayoutResId = layoutResId;
+            mViewType = viewType;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.core.view.ViewCompat;
+
+/**
+ * Runs an update once the view becomes visible on screen.
+ *
+ * Listeners are registered only while the trigger is armed. Visibility is checked right before
+ * the view tree is drawn, so the update is applied to the first frame in which the view is shown.
+ */
+class DeferredUpdateTrigger implements View.OnAttachStateChangeListener, ViewTreeObserver.OnPreDrawListener {
+    private final View mView;
+    private final Runnable mAction;
+    private boolean mArmed;
+
+    DeferredUpdateTrigger(View view, Runnable action) {
+        mView = view;
+        mAction = action;
+    }
+
+    public boolean isArmed() {
+        return mArmed;
+    }
+
+    public void arm() {
+        if (mArmed) {
+            return;
+        }
+        mArmed = true;
+
+        mView.addOnAttachStateChangeListener(this);
+        if (ViewCompat.isAttachedToWindow(mView)) {
+            mView.getViewTreeObserver().addOnPreDrawListener(this);
+        }
+    }
+
+    public void disarm() {
+        if (!mArmed) {
+            return;
+        }
+        mArmed = false;
+
+        mView.removeOnAttachStateChangeListener(this);
+        mView.getViewTreeObserver().removeOnPreDrawListener(this);
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        v.getViewTreeObserver().addOnPreDrawListener(this);
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        v.getViewTreeObserver().removeOnPreDrawListener(this);
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        if (!mView.isShown()) {
+            return true;
+        }
+
+        disarm();
+        mAction.run();
+
+        // skip this frame, the next one reflects the update
+        return false;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+/**
+ * Decides whether to smooth scroll to a selected page, shared by {@link TabLayoutHelper} and
+ * {@link ViewPager2TabLayoutHelper}.
+ */
+class SmoothScrollPolicy {
+    public static final int NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD = -1;
+
+    private int mDistanceThreshold = NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD;
+
+    public int getDistanceThreshold() {
+        return mDistanceThreshold;
+    }
+
+    /**
+     * Sets the maximum distance (number of pages) scrolled smoothly when a tab is selected.
+     *
+     * @param distance Number of pages, or {@link #NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD} to always scroll smoothly.
+     */
+    public void setDistanceThreshold(int distance) {
+        if (distance < 0 && distance != NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD) {
+            throw new IllegalArgumentException("distance must be >= 0");
+        }
+        mDistanceThreshold = distance;
+    }
+
+    /**
+     * Gets whether the pager should scroll smoothly from the current page to the selected one.
+     *
+     * @param currentItem Position of the current page
+     * @param position    Position of the selected page
+     * @return True to scroll smoothly, false to jump to the page.
+     */
+    public boolean shouldSmoothScroll(int currentItem, int position) {
+        return (mDistanceThreshold == NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD)
+                || (Math.abs(position - currentItem) <= mDistanceThreshold);
+    }
+}
@@ -17,22 +17,54 @@
 package com.h6ah4i.android.tablayouthelper;
 
 import android.database.DataSetObserver;
+import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
+import androidx.annotation.LayoutRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.collection.LongSparseArray;
 import com.google.android.material.tabs.TabLayout;
 import androidx.viewpager.widget.PagerAdapter;
+import androidx.core.os.TraceCompat;
 import androidx.core.view.ViewCompat;
+import androidx.core.widget.TextViewCompat;
 import androidx.viewpager.widget.ViewPager;
-import android.view.Gravity;
+import android.text.TextUtils;
+import android.text.method.TransformationMethod;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.LinearLayout;
+import android.widget.TextView;
 
 import java.lang.ref.WeakReference;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 
 public class TabLayoutHelper {
+    /**
+     * Value for {@link #setSmoothScrollDistanceThreshold(int)}; always smooth scroll to the selected page.
+     */
+    public static final int NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD = SmoothScrollPolicy.NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD;
+
+    private static final int DEFAULT_TAB_VIEW_POOL_SIZE = 8;
+    private static final int DEFAULT_TAB_VIRTUALIZATION_MARGIN = 8;
+
+    private static final String TRACE_SET_TABS_FROM_PAGER_ADAPTER = "TabLayoutHelper.setTabsFromPagerAdapter";
+    private static final String TRACE_CREATE_NEW_TAB = "TabLayoutHelper.createNewTab";
+    private static final String TRACE_UPDATE_TAB = "TabLayoutHelper.updateTab";
+    private static final String TRACE_DETERMINE_TAB_MODE = "TabLayoutHelper.determineTabMode";
+    private static final String TRACE_ADJUST_TAB_MODE = "TabLayoutHelper.adjustTabModeInternal";
+    private static final String TRACE_DEFERRED_SET_TABS = "TabLayoutHelper.deferredSetTabsFromPagerAdapter";
+    private static final String TRACE_DEFERRED_ADJUST_TAB_MODE = "TabLayoutHelper.deferredAdjustTabMode";
+    private static final String TRACE_DEFERRED_UPDATE_SCROLL_POSITION = "TabLayoutHelper.deferredUpdateScrollPosition";
+    private static final String TRACE_DEFERRED_UPDATE_VIRTUAL_TABS = "TabLayoutHelper.deferredUpdateVirtualTabs";
+
     protected TabLayout mTabLayout;
     protected ViewPager mViewPager;
 
@@ -42,9 +74,54 @@ public class TabLayoutHelper {
     protected DataSetObserver mInternalDataSetObserver;
     protected Runnable mAdjustTabModeRunnable;
     protected Runnable mSetTabsFromPagerAdapterRunnable;
+    protected Runnable mTabTitlesPrecomputedRunnable;
     protected Runnable mUpdateScrollPositionRunnable;
+    protected Runnable mUpdateVirtualTabsRunnable;
+    protected boolean mAdjustTabModePending;
+    protected boolean mSetTabsFromPagerAdapterPending;
+    protected boolean mUpdateScrollPositionPending;
+    protected boolean mUpdateVirtualTabsPending;
     protected boolean mAutoAdjustTabMode = false;
     protected boolean mDuringSetTabsFromPagerAdapter;
+    protected int mBatchUpdateDepth;
+    protected boolean mPendingBatchedDataSetChange;
+    protected MetricsListener mMetricsListener;
+    protected boolean mDeferUpdatesWhileHidden = false;
+    protected boolean mTraceEnabled = false;
+    protected boolean mTabReconciliationEnabled = false;
+    protected boolean mTabVirtualizationEnabled = false;
+    protected int mTabVirtualizationMargin = DEFAULT_TAB_VIRTUALIZATION_MARGIN;
+    protected boolean mAsyncTabViewInflationEnabled = false;
+    protected int mTabPrefetchReserveSize = 0;
+    protected boolean mTabTitlePrecomputationEnabled = false;
+
+    private final TabReconciler mTabReconciler = new TabReconciler();
+    private ArrayList<Object> mTabKeys;
+    private ArrayList<Object> mNewTabKeys = new ArrayList<>();
+    private final HashMap<Object, TabLayout.Tab> mTabsById = new HashMap<>();
+    private final LongSparseArray<Long> mBoxedTabIds = new LongSparseArray<>();
+    private DetachedTabContents[] mMovedTabContents = new DetachedTabContents[0];
+    private final TabViewPool mTabViewPool = new TabViewPool(DEFAULT_TAB_VIEW_POOL_SIZE);
+    private boolean mRecycleTabViews;
+    private TabPressDetector mTabPressDetector;
+    private DeferredUpdateTrigger mDeferredUpdateTrigger;
+    private AsyncTabViewInflater mAsyncTabViewInflater;
+    private TabPrefetcher mTabPrefetcher;
+    private boolean mPrefetchTabViewsUnsupported;
+    private int mPrefetchHitCount;
+    private int mPrefetchMissCount;
+    private TabTitlePrecomputer mTabTitlePrecomputer;
+    private final ArrayList<CharSequence> mTabTitles = new ArrayList<>();
+    private final TabModeResolver mTabModeResolver = new TabModeResolver();
+    private final SmoothScrollPolicy mSmoothScrollPolicy = new SmoothScrollPolicy();
+    private final TabWidthCache mTabWidthCache = mTabModeResolver.getTabWidthCache();
+    private final HashMap<TabLayout.Tab, BoundTabContents> mBoundTabContents = new HashMap<>();
+    private boolean mVirtualTabsActive;
+    private final BitSet mMaterializedTabs = new BitSet();
+    private ViewTreeObserver.OnScrollChangedListener mInternalOnScrollChangedListener;
+    private View.OnAttachStateChangeListener mInternalOnAttachStateChangeListener;
+    private int mLastVirtualScrollX;
+    private int mPendingAdjustTabModePrevScrollX;
 
     /**
      * Constructor.
@@ -95,6 +172,63 @@ public class TabLayoutHelper {
             }
         };
 
+        // NOTE: deferred operations reuse these instances, so rebuild / adjust cycles do not allocate
+        mSetTabsFromPagerAdapterRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mSetTabsFromPagerAdapterPending = false;
+                executeDeferredSetTabsFromPagerAdapter();
+            }
+        };
+
+        mTabTitlesPrecomputedRunnable = new Runnable() {
+            @Override
+            public void run() {
+                // NOTE: titles are not precomputed again, evicted or changed titles are laid out on the UI thread
+                mSetTabsFromPagerAdapterPending = false;
+                applyDeferredSetTabsFromPagerAdapter();
+            }
+        };
+
+        mAdjustTabModeRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mAdjustTabModePending = false;
+                final boolean traced = beginTraceSection(TRACE_DEFERRED_ADJUST_TAB_MODE);
+                try {
+                    adjustTabModeInternal(mTabLayout, mPendingAdjustTabModePrevScrollX);
+                } finally {
+                    endTraceSection(traced);
+                }
+            }
+        };
+
+        mUpdateScrollPositionRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mUpdateScrollPositionPending = false;
+                final boolean traced = beginTraceSection(TRACE_DEFERRED_UPDATE_SCROLL_POSITION);
+                try {
+                    updateScrollPosition();
+                } finally {
+                    endTraceSection(traced);
+                }
+            }
+        };
+
+        mUpdateVirtualTabsRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mUpdateVirtualTabsPending = false;
+                final boolean traced = beginTraceSection(TRACE_DEFERRED_UPDATE_VIRTUAL_TABS);
+                try {
+                    handleUpdateVirtualTabs();
+                } finally {
+                    endTraceSection(traced);
+                }
+            }
+        };
+
         setupWithViewPager(mTabLayout, mViewPager);
     }
 
@@ -122,6 +256,7 @@ public class TabLayoutHelper {
 
     /**
      * Sets auto tab mode adjustment enabled
+     * The tab mode is also re-evaluated when the width of the TabLayout changes (e.g. rotations).
      *
      * @param enabled True for enabled, otherwise false.
      */
@@ -131,6 +266,8 @@ public class TabLayoutHelper {
         }
         mAutoAdjustTabMode = enabled;
 
+        setLayoutChangeListenerEnabled(enabled);
+
         if (mAutoAdjustTabMode) {
             adjustTabMode(-1);
         } else {
@@ -148,291 +285,1698 @@ public class TabLayoutHelper {
     }
 
     /**
-     * Unregister internal listener objects, release object references, etc.
-     * This method should be called in order to avoid memory leaks.
+     * Sets the maximum distance (number of pages) scrolled smoothly when a tab is selected.
+     *
+     * Selecting a farther tab jumps to the page without smooth scrolling, so the ViewPager does not
+     * create and lay out every page in between; only the destination page and its neighbours are created.
+     *
+     * @param distance Number of pages, or {@link #NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD} to always scroll smoothly.
      */
-    public void release() {
-        cancelPendingAdjustTabMode();
-        cancelPendingSetTabsFromPagerAdapter();
-        cancelPendingUpdateScrollPosition();
+    public void setSmoothScrollDistanceThreshold(int distance) {
+        mSmoothScrollPolicy.setDistanceThreshold(distance);
+    }
 
-        if (mInternalOnAdapterChangeListener != null) {
-            mViewPager.removeOnAdapterChangeListener(mInternalOnAdapterChangeListener);
-            mInternalOnAdapterChangeListener = null;
-        }
-        if (mInternalDataSetObserver != null) {
-            mViewPager.getAdapter().unregisterDataSetObserver(mInternalDataSetObserver);
-            mInternalDataSetObserver = null;
-        }
-        if (mInternalOnTabSelectedListener != null) {
-            mTabLayout.removeOnTabSelectedListener(mInternalOnTabSelectedListener);
-            mInternalOnTabSelectedListener = null;
+    /**
+     * Gets the maximum distance (number of pages) scrolled smoothly when a tab is selected.
+     *
+     * @return Number of pages, or {@link #NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD}.
+     */
+    public int getSmoothScrollDistanceThreshold() {
+        return mSmoothScrollPolicy.getDistanceThreshold();
+    }
+
+    /**
+     * Sets the listener which is notified when a tab is pressed, before the tab is actually selected.
+     *
+     * This can be used to start preparing the page (e.g. loading its data) while the finger is still down.
+     * Tab views are watched for touch-downs only while a listener is set.
+     *
+     * @param listener OnTabPressListener, or null to stop watching touch-downs.
+     */
+    public void setOnTabPressListener(@Nullable OnTabPressListener listener) {
+        if (mTabPressDetector != null) {
+            mTabPressDetector.detach();
+            mTabPressDetector = null;
         }
-        if (mInternalTabLayoutOnPageChangeListener != null) {
-            mViewPager.removeOnPageChangeListener(mInternalTabLayoutOnPageChangeListener);
-            mInternalTabLayoutOnPageChangeListener = null;
+        if (listener != null) {
+            mTabPressDetector = new TabPressDetector(mTabLayout, listener);
+            mTabPressDetector.attach();
         }
-        mViewPager = null;
-        mTabLayout = null;
     }
 
-    public void updateAllTabs() {
-        int count = mTabLayout.getTabCount();
-        for (int i = 0; i < count; i++) {
-            updateTab(mTabLayout.getTabAt(i));
-        }
+    /**
+     * Sets the extra space required to switch to {@link TabLayout#MODE_FIXED} by auto tab mode adjustment.
+     *
+     * Tabs switch to {@link TabLayout#MODE_FIXED} only when they fit with this extra space, and stay in the mode
+     * until they do not fit at all. This prevents the mode from flipping on small changes near the threshold.
+     *
+     * @param hysteresis Extra space in pixels. 0 disables hysteresis.
+     */
+    public void setTabModeHysteresis(int hysteresis) {
+        mTabModeResolver.setHysteresis(hysteresis);
     }
 
     /**
-     * Override this method if you want to use custom tab layout.
+     * Gets the extra space required to switch to {@link TabLayout#MODE_FIXED} by auto tab mode adjustment.
      *
-     * @param tabLayout TabLayout
-     * @param adapter   PagerAdapter
-     * @param position  Position of the item
-     * @return TabLayout.Tab
+     * @return Extra space in pixels
      */
-    protected TabLayout.Tab onCreateTab(TabLayout tabLayout, PagerAdapter adapter, int position) {
-        TabLayout.Tab tab = tabLayout.newTab();
-        tab.setText(adapter.getPageTitle(position));
-        return tab;
+    public int getTabModeHysteresis() {
+        return mTabModeResolver.getHysteresis();
     }
 
     /**
-     * Override this method if you want to use custom tab layout
+     * Sets the listener which receives performance metrics of this helper.
+     * Metrics are not collected while no listener is set.
      *
-     * @param tab Tab
+     * @param listener MetricsListener, or null to stop collecting metrics.
      */
-    protected void onUpdateTab(TabLayout.Tab tab) {
-        if (tab.getCustomView() == null) {
-            tab.setCustomView(null); // invokes update() method internally.
-        }
+    public void setMetricsListener(@Nullable MetricsListener listener) {
+        mMetricsListener = listener;
     }
 
-    //
-    // internal methods
-    //
-    protected void handleOnDataSetChanged() {
-        cancelPendingUpdateScrollPosition();
-        cancelPendingSetTabsFromPagerAdapter();
+    /**
+     * Gets the listener which receives performance metrics of this helper.
+     *
+     * @return MetricsListener
+     */
+    @Nullable
+    public MetricsListener getMetricsListener() {
+        return mMetricsListener;
+    }
 
-        if (mSetTabsFromPagerAdapterRunnable == null) {
-            mSetTabsFromPagerAdapterRunnable = new Runnable() {
-                @Override
-                public void run() {
-                    setTabsFromPagerAdapter(mTabLayout, mViewPager.getAdapter(), mViewPager.getCurrentItem());
-                }
-            };
-        }
+    /**
+     * Sets whether trace sections (systrace / Perfetto) are emitted around tab updates and tab mode adjustments.
+     * Section names are annotated with the number of tabs.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setTraceEnabled(boolean enabled) {
+        mTraceEnabled = enabled;
+    }
 
-        mTabLayout.post(mSetTabsFromPagerAdapterRunnable);
+    /**
+     * Gets whether trace sections are emitted.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isTraceEnabled() {
+        return mTraceEnabled;
     }
 
-    protected void handleOnTabSelected(TabLayout.Tab tab) {
-        if (mDuringSetTabsFromPagerAdapter) {
-            return;
-        }
-        mViewPager.setCurrentItem(tab.getPosition());
-        cancelPendingUpdateScrollPosition();
+    /**
+     * Begins a batch update.
+     *
+     * Data set changes notified until the matching {@link #endBatchUpdate()} call are deferred,
+     * and tabs are updated only once after the outermost batch update has been ended.
+     * Calls can be nested.
+     */
+    public void beginBatchUpdate() {
+        mBatchUpdateDepth++;
     }
 
-    protected void handleOnTabUnselected(TabLayout.Tab tab) {
-        if (mDuringSetTabsFromPagerAdapter) {
-            return;
+    /**
+     * Ends a batch update started by {@link #beginBatchUpdate()}.
+     */
+    public void endBatchUpdate() {
+        if (mBatchUpdateDepth == 0) {
+            throw new IllegalStateException("endBatchUpdate() called without beginBatchUpdate()");
         }
-    }
 
-    protected void handleOnTabReselected(TabLayout.Tab tab) {
-        if (mDuringSetTabsFromPagerAdapter) {
-            return;
+        mBatchUpdateDepth--;
+
+        if (mBatchUpdateDepth == 0 && mPendingBatchedDataSetChange) {
+            mPendingBatchedDataSetChange = false;
+            scheduleSetTabsFromPagerAdapter();
         }
     }
 
-    protected void handleOnAdapterChanged(ViewPager viewPager, PagerAdapter oldAdapter, PagerAdapter newAdapter) {
-        if (mViewPager != viewPager) {
-            return;
-        }
+    /**
+     * Sets whether tab indicator updates during page scrolls are applied once per animation frame.
+     *
+     * When enabled, only the latest scroll position reported by the ViewPager within a frame is applied.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setIndicatorUpdateThrottlingEnabled(boolean enabled) {
+        mInternalTabLayoutOnPageChangeListener.setThrottlingEnabled(enabled);
+    }
 
-        if (oldAdapter != null) {
-            oldAdapter.unregisterDataSetObserver(mInternalDataSetObserver);
-        }
-        if (newAdapter != null) {
-            newAdapter.registerDataSetObserver(mInternalDataSetObserver);
-        }
+    /**
+     * Gets whether tab indicator updates during page scrolls are applied once per animation frame.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isIndicatorUpdateThrottlingEnabled() {
+        return mInternalTabLayoutOnPageChangeListener.isThrottlingEnabled();
+    }
 
-        setTabsFromPagerAdapter(mTabLayout, newAdapter, mViewPager.getCurrentItem());
+    /**
+     * Sets whether tab indicator updates which move the indicator less than a pixel are skipped.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setSkipSubPixelIndicatorUpdatesEnabled(boolean enabled) {
+        mInternalTabLayoutOnPageChangeListener.setSkipSubPixelUpdatesEnabled(enabled);
     }
 
-    protected void cancelPendingAdjustTabMode() {
-        if (mAdjustTabModeRunnable != null) {
-            mTabLayout.removeCallbacks(mAdjustTabModeRunnable);
-            mAdjustTabModeRunnable = null;
-        }
+    /**
+     * Gets whether tab indicator updates which move the indicator less than a pixel are skipped.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isSkipSubPixelIndicatorUpdatesEnabled() {
+        return mInternalTabLayoutOnPageChangeListener.isSkipSubPixelUpdatesEnabled();
     }
 
-    protected void cancelPendingSetTabsFromPagerAdapter() {
-        if (mSetTabsFromPagerAdapterRunnable != null) {
-            mTabLayout.removeCallbacks(mSetTabsFromPagerAdapterRunnable);
-            mSetTabsFromPagerAdapterRunnable = null;
+    /**
+     * Sets tab reconciliation enabled.
+     *
+     * When enabled, data set changes only insert, remove or move the tabs which actually changed
+     * instead of re-creating all of them. Tabs are matched by {@link #getTabId(PagerAdapter, int)},
+     * and kept tabs are re-bound via {@link #onBindTab(TabLayout.Tab, PagerAdapter, int)} and
+     * {@link #onUpdateTab(TabLayout.Tab)}, since contents of a page may change while its ID does not.
+     * Existing tabs are matched from the first data set change after enabling this option, unless a
+     * tabs update is pending at that time.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setTabReconciliationEnabled(boolean enabled) {
+        if (mTabReconciliationEnabled == enabled) {
+            return;
         }
-    }
+        mTabReconciliationEnabled = enabled;
+        mTabKeys = null;
+        mTabsById.clear();
 
-    protected void cancelPendingUpdateScrollPosition() {
-        if (mUpdateScrollPositionRunnable != null) {
-            mTabLayout.removeCallbacks(mUpdateScrollPositionRunnable);
-            mUpdateScrollPositionRunnable = null;
+        if (enabled) {
+            collectCurrentTabKeys();
         }
     }
 
-    protected void adjustTabMode(int prevScrollX) {
-        if (mAdjustTabModeRunnable != null) {
+    /**
+     * Gets whether tab reconciliation is enabled.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isTabReconciliationEnabled() {
+        return mTabReconciliationEnabled;
+    }
+
+    /**
+     * Sets tab virtualization enabled.
+     *
+     * When enabled, only tabs inside and near the visible area of the tab strip are bound via
+     * {@link #onBindTab(TabLayout.Tab, PagerAdapter, int)}. Other tabs are empty placeholder tabs,
+     * so their page titles and custom views are not created until they are scrolled into view.
+     * Tabs are bound and unbound in place while scrolling, and
+     * {@link #onCreateTab(TabLayout, PagerAdapter, int)} is not called.
+     * This is intended for adapters which have thousands of pages with {@link TabLayout#MODE_SCROLLABLE}.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setTabVirtualizationEnabled(boolean enabled) {
+        if (mTabVirtualizationEnabled == enabled) {
             return;
         }
+        mTabVirtualizationEnabled = enabled;
 
-        if (prevScrollX < 0) {
-            prevScrollX = mTabLayout.getScrollX();
+        setVirtualTabsListenersEnabled(enabled);
+        if (!enabled) {
+            cancelPendingUpdateVirtualTabs();
         }
 
-        if (ViewCompat.isLaidOut(mTabLayout)) {
-            adjustTabModeInternal(mTabLayout, prevScrollX);
-        } else {
-            final int prevScrollX1 = prevScrollX;
-            mAdjustTabModeRunnable = new Runnable() {
-                @Override
-                public void run() {
-                    mAdjustTabModeRunnable = null;
-                    adjustTabModeInternal(mTabLayout, prevScrollX1);
-                }
-            };
-            mTabLayout.post(mAdjustTabModeRunnable);
-        }
+        // re-create all tabs
+        mTabKeys = null;
+        mTabsById.clear();
+        setTabsFromPagerAdapter(mTabLayout, mViewPager.getAdapter(), mViewPager.getCurrentItem());
     }
 
-    protected TabLayout.Tab createNewTab(TabLayout tabLayout, PagerAdapter adapter, int position) {
-        return onCreateTab(tabLayout, adapter, position);
+    /**
+     * Gets whether tab virtualization is enabled.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isTabVirtualizationEnabled() {
+        return mTabVirtualizationEnabled;
     }
 
-    protected void setupWithViewPager(@NonNull TabLayout tabLayout, @NonNull ViewPager viewPager) {
-        final PagerAdapter adapter = viewPager.getAdapter();
-        if (adapter == null) {
-            throw new IllegalArgumentException("ViewPager does not have a PagerAdapter set");
+    /**
+     * Sets whether data set changes are deferred while the TabLayout is not shown.
+     *
+     * When enabled, data set changes notified while the TabLayout is detached from a window or
+     * invisible (including its ancestors, e.g. a hidden fragment) only mark tabs as stale, and tabs are
+     * updated once right before the TabLayout is drawn again.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setDeferUpdatesWhileHiddenEnabled(boolean enabled) {
+        if (mDeferUpdatesWhileHidden == enabled) {
+            return;
         }
+        mDeferUpdatesWhileHidden = enabled;
 
-        setTabsFromPagerAdapter(tabLayout, adapter, viewPager.getCurrentItem());
-
-        viewPager.getAdapter().registerDataSetObserver(mInternalDataSetObserver);
+        if (!enabled && mDeferredUpdateTrigger != null && mDeferredUpdateTrigger.isArmed()) {
+            mDeferredUpdateTrigger.disarm();
+            scheduleSetTabsFromPagerAdapter();
+        }
+    }
 
-        viewPager.addOnPageChangeListener(mInternalTabLayoutOnPageChangeListener);
-        viewPager.addOnAdapterChangeListener(mInternalOnAdapterChangeListener);
+    /**
+     * Gets whether data set changes are deferred while the TabLayout is not shown.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isDeferUpdatesWhileHiddenEnabled() {
+        return mDeferUpdatesWhileHidden;
+    }
 
-        tabLayout.addOnTabSelectedListener(mInternalOnTabSelectedListener);
+    /**
+     * Sets whether custom tab views are inflated on a background thread.
+     *
+     * When enabled, tabs whose layout is provided by {@link #getTabViewLayoutResId(PagerAdapter, int)} show
+     * the default tab view at first, and their custom views are swapped in once inflated. Such tabs are bound
+     * via {@link #onUpdateTab(TabLayout.Tab)} after the custom view has been set. The tab mode is adjusted
+     * again once all pending views have arrived. Only tabs created after this call are affected.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setAsyncTabViewInflationEnabled(boolean enabled) {
+        mAsyncTabViewInflationEnabled = enabled;
     }
 
-    protected void setTabsFromPagerAdapter(@NonNull TabLayout tabLayout, @Nullable PagerAdapter adapter, int currentItem) {
-        try {
-            mDuringSetTabsFromPagerAdapter = true;
+    /**
+     * Gets whether custom tab views are inflated on a background thread.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isAsyncTabViewInflationEnabled() {
+        return mAsyncTabViewInflationEnabled;
+    }
 
-            int prevSelectedTab = tabLayout.getSelectedTabPosition();
-            int prevScrollX = tabLayout.getScrollX();
+    /**
+     * Sets the number of tabs (and custom tab views) created in advance while the UI thread is idle.
+     *
+     * Pre-created tabs are used by {@link #onCreateTab(TabLayout, PagerAdapter, int)} instead of creating
+     * them on the frame which handles the data set change, and the reserve is refilled afterwards.
+     * Custom tab views are prefetched via {@link #onCreateTabView(TabLayout, PagerAdapter, int)} for the last
+     * position into the pool of recycled tab views, up to {@link #getTabViewPoolSize()}. They are used for
+     * positions of the same {@link #getTabViewType(PagerAdapter, int)} only.
+     * {@link MetricsListener#onTabPrefetchResult(int, int)} tells whether the reserve was large enough.
+     *
+     * @param size Number of tabs. 0 disables prefetching.
+     */
+    public void setTabPrefetchReserveSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must be >= 0");
+        }
+        mTabPrefetchReserveSize = size;
 
-            // remove all tabs
-            tabLayout.removeAllTabs();
+        if (size == 0) {
+            if (mTabPrefetcher != null) {
+                mTabPrefetcher.clear();
+                mTabPrefetcher = null;
+            }
+            return;
+        }
 
-            // add tabs
-            if (adapter != null) {
-                int count = adapter.getCount();
-                for (int i = 0; i < count; i++) {
-                    TabLayout.Tab tab = createNewTab(tabLayout, adapter, i);
-                    tabLayout.addTab(tab, false);
-                    updateTab(tab);
+        if (mTabPrefetcher == null) {
+            mTabPrefetcher = new TabPrefetcher(mTabLayout, new TabPrefetcher.Factory() {
+                @NonNull
+                @Override
+                public TabLayout.Tab createTab() {
+                    return mTabLayout.newTab();
                 }
 
-                // select current tab
-                currentItem = Math.min(currentItem, count - 1);
-                if (currentItem >= 0) {
-                    tabLayout.getTabAt(currentItem).select();
+                @Override
+                public boolean needsTabView() {
+                    return needsPrefetchTabView();
                 }
-            }
 
-            // adjust tab mode & gravity
-            if (mAutoAdjustTabMode) {
-                adjustTabMode(prevScrollX);
-            } else {
-                // restore scroll position if needed
-                int curTabMode = tabLayout.getTabMode();
-                if (curTabMode == TabLayout.MODE_SCROLLABLE) {
-                    tabLayout.scrollTo(prevScrollX, 0);
+                @Override
+                public void prefetchTabView() {
+                    handlePrefetchTabView();
                 }
+            });
+        }
+        mTabPrefetcher.setReserveSize(size);
+    }
+
+    /**
+     * Gets the number of tabs created in advance while the UI thread is idle.
+     *
+     * @return Number of tabs
+     */
+    public int getTabPrefetchReserveSize() {
+        return mTabPrefetchReserveSize;
+    }
+
+    /**
+     * Sets whether text layout of tab titles is precomputed on a background thread.
+     *
+     * When enabled, titles of a data set change are measured in background with the text metrics of the
+     * default tab view before tabs are updated, so measuring tabs for the tab mode and laying them out
+     * on the UI thread reuse the cached text layout. Tabs are updated once the titles have been
+     * precomputed. Only tabs using the default tab view are affected, and titles are not precomputed
+     * while tab virtualization is enabled, or when there are more than 512 tabs.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setTabTitlePrecomputationEnabled(boolean enabled) {
+        if (mTabTitlePrecomputationEnabled == enabled) {
+            return;
+        }
+        mTabTitlePrecomputationEnabled = enabled;
+
+        if (enabled) {
+            mTabTitlePrecomputer = new TabTitlePrecomputer(AsyncTask.THREAD_POOL_EXECUTOR);
+        } else if (mTabTitlePrecomputer != null) {
+            // NOTE: completion is posted by the precomputer, so it is cancelled there
+            final boolean waitingForTitles = mTabTitlePrecomputer.isRunning();
+            mTabTitlePrecomputer.cancel();
+            mTabTitlePrecomputer = null;
+
+            if (waitingForTitles) {
+                // update tabs right now
+                mSetTabsFromPagerAdapterPending = false;
+                applyDeferredSetTabsFromPagerAdapter();
+            }
+        }
+    }
+
+    /**
+     * Gets whether text layout of tab titles is precomputed on a background thread.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isTabTitlePrecomputationEnabled() {
+        return mTabTitlePrecomputationEnabled;
+    }
+
+    /**
+     * Sets the number of tabs created beyond each side of the visible area while tab virtualization is enabled.
+     *
+     * @param margin Number of tabs
+     */
+    public void setTabVirtualizationMargin(int margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("margin must be >= 0");
+        }
+        mTabVirtualizationMargin = margin;
+
+        if (mVirtualTabsActive) {
+            scheduleUpdateVirtualTabs();
+        }
+    }
+
+    /**
+     * Gets the number of tabs created beyond each side of the visible area while tab virtualization is enabled.
+     *
+     * @return Number of tabs
+     */
+    public int getTabVirtualizationMargin() {
+        return mTabVirtualizationMargin;
+    }
+
+    /**
+     * Finds the tab which has the specified ID.
+     * Tabs are tracked by their IDs only while tab reconciliation is enabled.
+     *
+     * @param id Tab ID returned by {@link #getTabId(PagerAdapter, int)}
+     * @return TabLayout.Tab, or null if not found.
+     */
+    @Nullable
+    public TabLayout.Tab findTabById(@Nullable Object id) {
+        return mTabsById.get(id);
+    }
+
+    /**
+     * Sets the maximum number of custom tab views kept for recycling.
+     * Custom views created by {@link #onCreateTabView(TabLayout, PagerAdapter, int)} are
+     * recycled when their tabs are removed.
+     *
+     * @param size Maximum number of views. 0 disables recycling.
+     */
+    public void setTabViewPoolSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must be >= 0");
+        }
+        mTabViewPool.setMaxSize(size);
+    }
+
+    /**
+     * Gets the maximum number of custom tab views kept for recycling.
+     *
+     * @return Maximum number of views
+     */
+    public int getTabViewPoolSize() {
+        return mTabViewPool.getMaxSize();
+    }
+
+    /**
+     * Unregister internal listener objects, release object references, etc.
+     * This method should be called in order to avoid memory leaks.
+     */
+    public void release() {
+        setOnTabPressListener(null);
+        setLayoutChangeListenerEnabled(false);
+        cancelPendingAdjustTabMode();
+        cancelPendingSetTabsFromPagerAdapter();
+        cancelPendingUpdateScrollPosition();
+        cancelPendingUpdateVirtualTabs();
+        setVirtualTabsListenersEnabled(false);
+
+        if (mAsyncTabViewInflater != null) {
+            mAsyncTabViewInflater.release();
+            mAsyncTabViewInflater = null;
+        }
+        if (mTabPrefetcher != null) {
+            mTabPrefetcher.clear();
+            mTabPrefetcher = null;
+        }
+        mTabTitlePrecomputer = null;
+        mTabTitlePrecomputationEnabled = false;
+        if (mInternalOnAdapterChangeListener != null) {
+            mViewPager.removeOnAdapterChangeListener(mInternalOnAdapterChangeListener);
+            mInternalOnAdapterChangeListener = null;
+        }
+        if (mInternalDataSetObserver != null) {
+            mViewPager.getAdapter().unregisterDataSetObserver(mInternalDataSetObserver);
+            mInternalDataSetObserver = null;
+        }
+        if (mInternalOnTabSelectedListener != null) {
+            mTabLayout.removeOnTabSelectedListener(mInternalOnTabSelectedListener);
+            mInternalOnTabSelectedListener = null;
+        }
+        if (mInternalTabLayoutOnPageChangeListener != null) {
+            mInternalTabLayoutOnPageChangeListener.cancelPendingScrollPosition();
+            mViewPager.removeOnPageChangeListener(mInternalTabLayoutOnPageChangeListener);
+            mInternalTabLayoutOnPageChangeListener = null;
+        }
+        mTabKeys = null;
+        mTabsById.clear();
+        mBoxedTabIds.clear();
+        mMovedTabContents = new DetachedTabContents[0];
+        mTabViewPool.clear();
+        mTabWidthCache.invalidateAll();
+        mBoundTabContents.clear();
+        mMaterializedTabs.clear();
+        mMetricsListener = null;
+        mViewPager = null;
+        mTabLayout = null;
+    }
+
+    /**
+     * Updates all tabs via {@link #onUpdateTab(TabLayout.Tab, List)}.
+     * This method should also be called after modifying tabs directly, since measured tab widths are cached.
+     */
+    public void updateAllTabs() {
+        int count = mTabLayout.getTabCount();
+        for (int i = 0; i < count; i++) {
+            if (mVirtualTabsActive && !mMaterializedTabs.get(i)) {
+                // placeholder tab
+                continue;
+            }
+            updateTab(mTabLayout.getTabAt(i));
+        }
+    }
+
+    /**
+     * Updates the tab at the specified position via {@link #onUpdateTab(TabLayout.Tab, List)}.
+     *
+     * @param position Position of the tab
+     */
+    public void notifyTabChanged(int position) {
+        notifyTabRangeChanged(position, 1, null);
+    }
+
+    /**
+     * Updates the tab at the specified position via {@link #onUpdateTab(TabLayout.Tab, List)}.
+     *
+     * @param position Position of the tab
+     * @param payload  Optional payload passed to {@link #onUpdateTab(TabLayout.Tab, List)}
+     */
+    public void notifyTabChanged(int position, @Nullable Object payload) {
+        notifyTabRangeChanged(position, 1, payload);
+    }
+
+    /**
+     * Updates tabs in the specified range via {@link #onUpdateTab(TabLayout.Tab, List)}.
+     *
+     * @param positionStart Position of the first tab
+     * @param itemCount     Number of tabs
+     */
+    public void notifyTabRangeChanged(int positionStart, int itemCount) {
+        notifyTabRangeChanged(positionStart, itemCount, null);
+    }
+
+    /**
+     * Updates tabs in the specified range via {@link #onUpdateTab(TabLayout.Tab, List)}.
+     *
+     * @param positionStart Position of the first tab
+     * @param itemCount     Number of tabs
+     * @param payload       Optional payload passed to {@link #onUpdateTab(TabLayout.Tab, List)}
+     */
+    public void notifyTabRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+        final int count = mTabLayout.getTabCount();
+        if (positionStart < 0 || itemCount < 0 || positionStart + itemCount > count) {
+            throw new IndexOutOfBoundsException(
+                    "positionStart = " + positionStart + ", itemCount = " + itemCount + ", tab count = " + count);
+        }
+
+        final List<Object> payloads = (payload != null)
+                ? Collections.singletonList(payload) : Collections.<Object>emptyList();
+
+        for (int i = positionStart; i < positionStart + itemCount; i++) {
+            if (mVirtualTabsActive && !mMaterializedTabs.get(i)) {
+                // placeholder tab
+                continue;
+            }
+            updateTab(mTabLayout.getTabAt(i), payloads);
+        }
+
+        if (mAutoAdjustTabMode && itemCount > 0 && !mAdjustTabModePending) {
+            // rebound tabs may have changed their widths; notifications in a row are adjusted at once
+            postAdjustTabMode(mTabLayout.getScrollX());
+        }
+    }
+
+    /**
+     * Override this method if you want to use custom tab layout.
+     *
+     * The default implementation obtains a recycled custom view or creates a new one via
+     * {@link #onCreateTabView(TabLayout, PagerAdapter, int)}, then calls
+     * {@link #onBindTab(TabLayout.Tab, PagerAdapter, int)}.
+     *
+     * @param tabLayout TabLayout
+     * @param adapter   PagerAdapter
+     * @param position  Position of the item
+     * @return TabLayout.Tab
+     */
+    protected TabLayout.Tab onCreateTab(TabLayout tabLayout, PagerAdapter adapter, int position) {
+        TabLayout.Tab tab = obtainNewTab(tabLayout);
+        View customView = obtainTabView(tabLayout, tab, adapter, position);
+        if (customView != null) {
+            tab.setCustomView(customView);
+        }
+        onBindTab(tab, adapter, position);
+        return tab;
+    }
+
+    /**
+     * Override this method if you want to use custom tab view.
+     * Views returned by this method are recycled when their tabs are removed, so they should not hold
+     * position specific states which are not updated in {@link #onBindTab(TabLayout.Tab, PagerAdapter, int)}
+     * or {@link #onUpdateTab(TabLayout.Tab)}. If the layout depends on the position, override
+     * {@link #getTabViewType(PagerAdapter, int)} as well.
+     *
+     * @param tabLayout TabLayout
+     * @param adapter   PagerAdapter
+     * @param position  Position of the item
+     * @return Custom tab view, or null to use the default tab view.
+     */
+    @Nullable
+    protected View onCreateTabView(TabLayout tabLayout, PagerAdapter adapter, int position) {
+        return null;
+    }
+
+    /**
+     * Override this method if you want to inflate custom tab views on a background thread.
+     * The returned layout is used instead of {@link #onCreateTabView(TabLayout, PagerAdapter, int)}
+     * while async tab view inflation is enabled, and views are recycled in the same way.
+     *
+     * @param adapter  PagerAdapter
+     * @param position Position of the item
+     * @return Layout resource ID of the custom tab view, or 0 to create the view synchronously.
+     * @see #setAsyncTabViewInflationEnabled(boolean)
+     */
+    @LayoutRes
+    protected int getTabViewLayoutResId(PagerAdapter adapter, int position) {
+        return 0;
+    }
+
+    /**
+     * Override this method if custom tab views of different layouts are created for different positions.
+     * Recycled and prefetched custom views are only reused for positions of the same view type.
+     *
+     * The default implementation returns 0, so all custom tab views are treated as interchangeable.
+     *
+     * @param adapter  PagerAdapter
+     * @param position Position of the item
+     * @return View type, 0 or greater
+     * @see #onCreateTabView(TabLayout, PagerAdapter, int)
+     */
+    protected int getTabViewType(PagerAdapter adapter, int position) {
+        return 0;
+    }
+
+    /**
+     * Override this method if you want to bind custom contents to a newly created tab.
+     * The tab may have a recycled custom view. While tab reconciliation is enabled, this method is also
+     * called for tabs kept across a data set change, so it should not change anything that is up to date.
+     *
+     * @param tab      Tab
+     * @param adapter  PagerAdapter
+     * @param position Position of the item
+     */
+    protected void onBindTab(TabLayout.Tab tab, PagerAdapter adapter, int position) {
+        CharSequence title = adapter.getPageTitle(position);
+        if (!TextUtils.equals(title, tab.getText())) {
+            // NOTE: setText() updates the tab view even if the text is not changed
+            tab.setText(title);
+        }
+    }
+
+    /**
+     * Override this method if you want to give each tab a stable identity.
+     * IDs are used to match tabs across data set changes while tab reconciliation is enabled.
+     *
+     * The default implementation returns {@link TabIdProvider#getTabId(int)} if the adapter
+     * implements {@link TabIdProvider}, otherwise the page title.
+     *
+     * @param adapter  PagerAdapter
+     * @param position Position of the item
+     * @return Tab ID
+     */
+    @Nullable
+    protected Object getTabId(PagerAdapter adapter, int position) {
+        if (adapter instanceof TabIdProvider) {
+            return boxTabId(((TabIdProvider) adapter).getTabId(position));
+        }
+        CharSequence title = adapter.getPageTitle(position);
+        return (title != null) ? title.toString() : null;
+    }
+
+    /**
+     * Override this method if you want to use custom tab layout.
+     *
+     * The default implementation does nothing; setters of {@link TabLayout.Tab} (including the ones called
+     * in {@link #onBindTab(TabLayout.Tab, PagerAdapter, int)}) update the default tab view by themselves.
+     *
+     * @param tab Tab
+     */
+    protected void onUpdateTab(TabLayout.Tab tab) {
+        // NOTE: resetting the custom view here would update the tab view a second time
+    }
+
+    /**
+     * Override this method if you want to tell whether the last {@link #onUpdateTab(TabLayout.Tab, List)} call
+     * has changed the appearance of the tab. If this method returns false, the tab is not re-measured when
+     * determining the tab mode.
+     *
+     * The default implementation returns true for tabs which have a custom view, otherwise compares text,
+     * icon and content description with the last bound ones.
+     *
+     * @param tab Tab
+     * @return True if the appearance of the tab may have been changed, otherwise false.
+     */
+    protected boolean isTabContentsChanged(TabLayout.Tab tab) {
+        return (tab.getCustomView() != null) || isTabBoundContentsChanged(tab);
+    }
+
+    /**
+     * Override this method if you want to update only the parts of the custom tab layout specified by payloads.
+     * The default implementation calls {@link #onUpdateTab(TabLayout.Tab)}.
+     *
+     * @param tab      Tab
+     * @param payloads Payloads passed to {@link #notifyTabChanged(int, Object)} or
+     *                 {@link #notifyTabRangeChanged(int, int, Object)}. Empty for full update.
+     */
+    protected void onUpdateTab(TabLayout.Tab tab, @NonNull List<Object> payloads) {
+        onUpdateTab(tab);
+    }
+
+    //
+    // internal methods
+    //
+    protected void handleOnDataSetChanged() {
+        cancelPendingUpdateScrollPosition();
+
+        if (mBatchUpdateDepth > 0) {
+            mPendingBatchedDataSetChange = true;
+            return;
+        }
+
+        scheduleSetTabsFromPagerAdapter();
+    }
+
+    protected void scheduleSetTabsFromPagerAdapter() {
+        if (mSetTabsFromPagerAdapterPending
+                || (mDeferredUpdateTrigger != null && mDeferredUpdateTrigger.isArmed())) {
+            // coalesced into the pending update
+            if (mMetricsListener != null) {
+                mMetricsListener.onTabsUpdateCoalesced();
+            }
+            return;
+        }
+
+        if (mDeferUpdatesWhileHidden && !mTabLayout.isShown()) {
+            // tabs are updated once when the tab layout is shown again
+            if (mDeferredUpdateTrigger == null) {
+                mDeferredUpdateTrigger = new DeferredUpdateTrigger(mTabLayout, new Runnable() {
+                    @Override
+                    public void run() {
+                        executeDeferredSetTabsFromPagerAdapter();
+                    }
+                });
+            }
+            mDeferredUpdateTrigger.arm();
+            return;
+        }
+
+        mSetTabsFromPagerAdapterPending = true;
+
+        // NOTE: runs at the next animation frame (Choreographer), so all changes made within a frame are applied at once
+        ViewCompat.postOnAnimation(mTabLayout, mSetTabsFromPagerAdapterRunnable);
+    }
+
+    private void executeDeferredSetTabsFromPagerAdapter() {
+        if (precomputeTabTitles()) {
+            // tabs are updated once titles have been precomputed
+            mSetTabsFromPagerAdapterPending = true;
+            return;
+        }
+
+        applyDeferredSetTabsFromPagerAdapter();
+    }
+
+    private void applyDeferredSetTabsFromPagerAdapter() {
+        if (mMetricsListener != null) {
+            mMetricsListener.onTabsUpdateExecuted();
+        }
+        final boolean traced = beginTraceSection(TRACE_DEFERRED_SET_TABS);
+        try {
+            setTabsFromPagerAdapter(mTabLayout, mViewPager.getAdapter(), mViewPager.getCurrentItem());
+        } finally {
+            endTraceSection(traced);
+        }
+    }
+
+    protected void handleOnTabSelected(TabLayout.Tab tab) {
+        if (mDuringSetTabsFromPagerAdapter) {
+            return;
+        }
+        final int position = tab.getPosition();
+        mViewPager.setCurrentItem(position, mSmoothScrollPolicy.shouldSmoothScroll(mViewPager.getCurrentItem(), position));
+        cancelPendingUpdateScrollPosition();
+
+        if (mVirtualTabsActive) {
+            scheduleUpdateVirtualTabs();
+        }
+    }
+
+    protected void handleOnTabUnselected(TabLayout.Tab tab) {
+        if (mDuringSetTabsFromPagerAdapter) {
+            return;
+        }
+    }
+
+    protected void handleOnTabReselected(TabLayout.Tab tab) {
+        if (mDuringSetTabsFromPagerAdapter) {
+            return;
+        }
+    }
+
+    protected void handleOnAdapterChanged(ViewPager viewPager, PagerAdapter oldAdapter, PagerAdapter newAdapter) {
+        if (mViewPager != viewPager) {
+            return;
+        }
+
+        if (oldAdapter != null) {
+            oldAdapter.unregisterDataSetObserver(mInternalDataSetObserver);
+        }
+        if (newAdapter != null) {
+            newAdapter.registerDataSetObserver(mInternalDataSetObserver);
+        }
+
+        // tabs are re-created right now
+        cancelPendingSetTabsFromPagerAdapter();
+
+        // tabs of the old adapter cannot be matched with the new one
+        mTabKeys = null;
+        mTabsById.clear();
+
+        setTabsFromPagerAdapter(mTabLayout, newAdapter, mViewPager.getCurrentItem());
+    }
+
+    protected void cancelPendingAdjustTabMode() {
+        if (mAdjustTabModePending) {
+            mTabLayout.removeCallbacks(mAdjustTabModeRunnable);
+            mAdjustTabModePending = false;
+        }
+    }
+
+    protected void cancelPendingSetTabsFromPagerAdapter() {
+        if (mSetTabsFromPagerAdapterPending) {
+            mTabLayout.removeCallbacks(mSetTabsFromPagerAdapterRunnable);
+            mSetTabsFromPagerAdapterPending = false;
+        }
+        if (mTabTitlePrecomputer != null) {
+            mTabTitlePrecomputer.cancel();
+        }
+        if (mDeferredUpdateTrigger != null) {
+            mDeferredUpdateTrigger.disarm();
+        }
+    }
+
+    protected void cancelPendingUpdateVirtualTabs() {
+        if (mUpdateVirtualTabsPending) {
+            mTabLayout.removeCallbacks(mUpdateVirtualTabsRunnable);
+            mUpdateVirtualTabsPending = false;
+        }
+    }
+
+    protected void cancelPendingUpdateScrollPosition() {
+        if (mUpdateScrollPositionPending) {
+            mTabLayout.removeCallbacks(mUpdateScrollPositionRunnable);
+            mUpdateScrollPositionPending = false;
+        }
+    }
+
+    protected void adjustTabMode(int prevScrollX) {
+        if (mAdjustTabModePending) {
+            return;
+        }
+
+        if (prevScrollX < 0) {
+            prevScrollX = mTabLayout.getScrollX();
+        }
+
+        if (ViewCompat.isLaidOut(mTabLayout)) {
+            adjustTabModeInternal(mTabLayout, prevScrollX);
+        } else {
+            postAdjustTabMode(prevScrollX);
+        }
+    }
+
+    private void postAdjustTabMode(int prevScrollX) {
+        mAdjustTabModePending = true;
+        mPendingAdjustTabModePrevScrollX = prevScrollX;
+        mTabLayout.post(mAdjustTabModeRunnable);
+    }
+
+    private void handleOnTabLayoutWidthChanged() {
+        if (!mAutoAdjustTabMode || mAdjustTabModePending) {
+            return;
+        }
+
+        // NOTE: changing the tab mode requests layout, so it is not allowed during the current layout pass
+        postAdjustTabMode(mTabLayout.getScrollX());
+    }
+
+    private void setLayoutChangeListenerEnabled(boolean enabled) {
+        mTabModeResolver.setOnWidthChangedListener(mTabLayout, (!enabled) ? null : new Runnable() {
+            @Override
+            public void run() {
+                handleOnTabLayoutWidthChanged();
+            }
+        });
+    }
+
+    protected TabLayout.Tab createNewTab(TabLayout tabLayout, PagerAdapter adapter, int position) {
+        final boolean traced = beginTraceSection(TRACE_CREATE_NEW_TAB);
+        try {
+            return onCreateTab(tabLayout, adapter, position);
+        } finally {
+            endTraceSection(traced);
+        }
+    }
+
+    protected void setupWithViewPager(@NonNull TabLayout tabLayout, @NonNull ViewPager viewPager) {
+        final PagerAdapter adapter = viewPager.getAdapter();
+        if (adapter == null) {
+            throw new IllegalArgumentException("ViewPager does not have a PagerAdapter set");
+        }
+
+        setTabsFromPagerAdapter(tabLayout, adapter, viewPager.getCurrentItem());
+
+        viewPager.getAdapter().registerDataSetObserver(mInternalDataSetObserver);
+
+        viewPager.addOnPageChangeListener(mInternalTabLayoutOnPageChangeListener);
+        viewPager.addOnAdapterChangeListener(mInternalOnAdapterChangeListener);
+
+        tabLayout.addOnTabSelectedListener(mInternalOnTabSelectedListener);
+    }
+
+    protected void setTabsFromPagerAdapter(@NonNull TabLayout tabLayout, @Nullable PagerAdapter adapter, int currentItem) {
+        final MetricsListener metrics = mMetricsListener;
+        final long startTime = (metrics != null) ? System.nanoTime() : 0;
+        final boolean traced = beginTraceSection(
+                TRACE_SET_TABS_FROM_PAGER_ADAPTER, (adapter != null) ? adapter.getCount() : 0);
+
+        try {
+            mDuringSetTabsFromPagerAdapter = true;
+
+            int prevSelectedTab = tabLayout.getSelectedTabPosition();
+            int prevScrollX = tabLayout.getScrollX();
+
+            if (adapter != null && mTabVirtualizationEnabled) {
+                // create tabs near the visible area only
+                setVirtualTabs(tabLayout, adapter, currentItem);
+            } else if (adapter != null && canReconcileTabs(tabLayout)) {
+                // insert, remove or move changed tabs only
+                reconcileTabs(tabLayout, adapter);
+            } else {
+                // remove all tabs
+                recycleAllTabViews(tabLayout);
+                handleOnAllTabsRemoved();
+                tabLayout.removeAllTabs();
+                mTabKeys = null;
+                mTabsById.clear();
+                mVirtualTabsActive = false;
+                mMaterializedTabs.clear();
+
+                // add tabs
+                if (adapter != null) {
+                    int count = adapter.getCount();
+                    for (int i = 0; i < count; i++) {
+                        TabLayout.Tab tab = createNewTab(tabLayout, adapter, i);
+                        tabLayout.addTab(tab, false);
+                        handleOnTabAdded(tab);
+                        updateTab(tab);
+                    }
+
+                    if (mTabReconciliationEnabled) {
+                        mTabKeys = collectTabKeys(adapter, new ArrayList<>(count));
+                        updateTabsById(tabLayout);
+                    }
+                }
+            }
+
+            if (adapter != null) {
+                // select current tab
+                currentItem = Math.min(currentItem, tabLayout.getTabCount() - 1);
+                if (currentItem >= 0) {
+                    tabLayout.getTabAt(currentItem).select();
+                }
+            }
+
+            // adjust tab mode & gravity
+            if (mAutoAdjustTabMode) {
+                adjustTabMode(prevScrollX);
+            } else {
+                // restore scroll position if needed
+                int curTabMode = tabLayout.getTabMode();
+                if (curTabMode == TabLayout.MODE_SCROLLABLE) {
+                    tabLayout.scrollTo(prevScrollX, 0);
+                }
+            }
+        } finally {
+            mDuringSetTabsFromPagerAdapter = false;
+            endTraceSection(traced);
+        }
+
+        if (metrics != null) {
+            metrics.onTabsUpdated(tabLayout.getTabCount(), System.nanoTime() - startTime);
+        }
+
+        if (mTabPrefetcher != null) {
+            if (metrics != null && (mPrefetchHitCount + mPrefetchMissCount) > 0) {
+                metrics.onTabPrefetchResult(mPrefetchHitCount, mPrefetchMissCount);
+            }
+            mPrefetchHitCount = 0;
+            mPrefetchMissCount = 0;
+
+            // refill the reserve for the next burst
+            mTabPrefetcher.schedule();
+        }
+    }
+
+    protected void updateTab(TabLayout.Tab tab) {
+        updateTab(tab, Collections.<Object>emptyList());
+    }
+
+    protected void updateTab(TabLayout.Tab tab, @NonNull List<Object> payloads) {
+        if (mAsyncTabViewInflater != null && mAsyncTabViewInflater.isPending(tab)) {
+            // bound once the custom view arrives
+            return;
+        }
+
+        final boolean traced = beginTraceSection(TRACE_UPDATE_TAB);
+        try {
+            onUpdateTab(tab, payloads);
+        } finally {
+            endTraceSection(traced);
+        }
+
+        if (isTabContentsChanged(tab)) {
+            mTabWidthCache.invalidate(tab);
+        }
+        recordBoundTabContents(tab);
+    }
+
+    private void handleOnTabAdded(TabLayout.Tab tab) {
+        // NOTE: TabLayout.addTab() binds the tab to its view, so the view is up to date here
+        mTabWidthCache.invalidate(tab);
+        recordBoundTabContents(tab);
+    }
+
+    private void handleOnTabRemoved(TabLayout.Tab tab) {
+        mTabWidthCache.remove(tab);
+        mBoundTabContents.remove(tab);
+        // NOTE: TabLayout reuses removed Tab objects
+        if (mAsyncTabViewInflater != null) {
+            mAsyncTabViewInflater.cancel(tab);
+        }
+    }
+
+    private void handleOnAllTabsRemoved() {
+        mTabWidthCache.clear();
+        mBoundTabContents.clear();
+        if (mAsyncTabViewInflater != null) {
+            mAsyncTabViewInflater.cancelAll();
+        }
+    }
+
+    private void recordBoundTabContents(TabLayout.Tab tab) {
+        BoundTabContents contents = mBoundTabContents.get(tab);
+        if (contents == null) {
+            contents = new BoundTabContents();
+            mBoundTabContents.put(tab, contents);
+        }
+        contents.set(tab);
+    }
+
+    /**
+     * Gets whether text, icon or content description of the tab differs from the last bound one.
+     *
+     * @param tab Tab
+     * @return True if the tab has been changed, or it is not tracked by this helper.
+     */
+    protected boolean isTabBoundContentsChanged(TabLayout.Tab tab) {
+        BoundTabContents contents = mBoundTabContents.get(tab);
+        return (contents == null) || !contents.matches(tab);
+    }
+
+    private boolean precomputeTabTitles() {
+        final PagerAdapter adapter = mViewPager.getAdapter();
+        if (mTabTitlePrecomputer == null || adapter == null || mTabVirtualizationEnabled) {
+            // NOTE: virtual tabs bind titles near the visible area only, which is cheap enough on the UI thread
+            return false;
+        }
+
+        final int count = adapter.getCount();
+        if (count > TabTitlePrecomputer.MAX_PRECOMPUTED_TITLES) {
+            // the cache could not hold all of them, and each pass would evict titles the next one needs
+            return false;
+        }
+
+        final TextView titleView = findTabTitleTextView(mTabLayout);
+        if (titleView == null) {
+            // no default tab views to take text metrics from
+            return false;
+        }
+        mTabTitlePrecomputer.setParams(TextViewCompat.getTextMetricsParams(titleView));
+
+        // NOTE: the title view lays out transformed text (e.g. textAllCaps), so the same text has to be measured
+        final TransformationMethod transformation = titleView.getTransformationMethod();
+        final ArrayList<CharSequence> titles = mTabTitles;
+        titles.clear();
+        titles.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            CharSequence title = adapter.getPageTitle(i);
+            if (transformation != null && title != null) {
+                title = transformation.getTransformation(title, titleView);
+            }
+            titles.add(title);
+        }
+
+        boolean started = mTabTitlePrecomputer.precompute(titles, mTabTitlesPrecomputedRunnable);
+        titles.clear();
+
+        return started;
+    }
+
+    @Nullable
+    private static TextView findTabTitleTextView(TabLayout tabLayout) {
+        // NOTE: text appearance of the default tab view is not exposed, so it is taken from an existing tab
+        ViewGroup slidingTabStrip = (ViewGroup) tabLayout.getChildAt(0);
+        int count = Math.min(tabLayout.getTabCount(), slidingTabStrip.getChildCount());
+        for (int i = 0; i < count; i++) {
+            View tabView = slidingTabStrip.getChildAt(i);
+            if (tabLayout.getTabAt(i).getCustomView() != null || !(tabView instanceof ViewGroup)) {
+                continue;
+            }
+
+            ViewGroup tabViewGroup = (ViewGroup) tabView;
+            for (int j = 0; j < tabViewGroup.getChildCount(); j++) {
+                View child = tabViewGroup.getChildAt(j);
+                if (child instanceof TextView && child.getVisibility() == View.VISIBLE) {
+                    return (TextView) child;
+                }
+            }
+        }
+        return null;
+    }
+
+    private TabLayout.Tab obtainNewTab(TabLayout tabLayout) {
+        if (mTabPrefetcher == null) {
+            return tabLayout.newTab();
+        }
+
+        TabLayout.Tab tab = mTabPrefetcher.obtainTab();
+        if (tab != null) {
+            mPrefetchHitCount++;
+            return tab;
+        } else {
+            mPrefetchMissCount++;
+            return tabLayout.newTab();
+        }
+    }
+
+    private boolean needsPrefetchTabView() {
+        final PagerAdapter adapter = mViewPager.getAdapter();
+        if (mPrefetchTabViewsUnsupported || adapter == null || adapter.getCount() == 0) {
+            return false;
+        }
+
+        // NOTE: views of other types also take up the pool
+        return mTabViewPool.size() < mTabViewPool.getMaxSize()
+                && mTabViewPool.size(getTabViewType(adapter, adapter.getCount() - 1)) < mTabPrefetchReserveSize;
+    }
+
+    private void handlePrefetchTabView() {
+        final PagerAdapter adapter = mViewPager.getAdapter();
+
+        // NOTE: views are prefetched for the last position, where appended pages appear.
+        // They are reused only for positions of the same view type.
+        final int position = adapter.getCount() - 1;
+        View view = onCreateTabView(mTabLayout, adapter, position);
+        if (view == null) {
+            // default tab views are created by TabLayout.newTab()
+            mPrefetchTabViewsUnsupported = true;
+            return;
+        }
+
+        // only views created by this helper are recycled
+        mRecycleTabViews = true;
+        mTabViewPool.setViewType(view, getTabViewType(adapter, position));
+        mTabViewPool.release(view);
+    }
+
+    private View obtainTabView(TabLayout tabLayout, TabLayout.Tab tab, PagerAdapter adapter, int position) {
+        final int viewType = getTabViewType(adapter, position);
+        View view = mTabViewPool.obtain(viewType);
+        if (view == null && requestAsyncTabView(tab, adapter, position)) {
+            // the default tab view is shown until the custom view arrives
+            return null;
+        }
+        if (view == null) {
+            view = onCreateTabView(tabLayout, adapter, position);
+            if (view != null) {
+                // only views created by this helper are recycled
+                mRecycleTabViews = true;
+                mTabViewPool.setViewType(view, viewType);
+            }
+        }
+        return view;
+    }
+
+    private boolean requestAsyncTabView(TabLayout.Tab tab, PagerAdapter adapter, int position) {
+        if (!mAsyncTabViewInflationEnabled) {
+            return false;
+        }
+
+        int layoutResId = getTabViewLayoutResId(adapter, position);
+        if (layoutResId == 0) {
+            return false;
+        }
+
+        if (mAsyncTabViewInflater == null) {
+            mAsyncTabViewInflater = new AsyncTabViewInflater(mTabLayout, new AsyncTabViewInflater.Callback() {
+                @Override
+                public void onTabViewInflated(@Nullable TabLayout.Tab tab, @NonNull View view, int viewType) {
+                    handleOnTabViewInflated(tab, view, viewType);
+                }
+            });
+        }
+        mAsyncTabViewInflater.inflate(tab, layoutResId, getTabViewType(adapter, position));
+
+        return true;
+    }
+
+    private void handleOnTabViewInflated(@Nullable TabLayout.Tab tab, @NonNull View view, int viewType) {
+        // only views created by this helper are recycled
+        mRecycleTabViews = true;
+        mTabViewPool.setViewType(view, viewType);
+
+        if (tab == null) {
+            // the tab has been removed in the meantime
+            mTabViewPool.release(view);
+            return;
+        }
+
+        // NOTE: the selected state is carried over to the custom view, and the scroll position is not changed
+        tab.setCustomView(view);
+        mTabWidthCache.invalidate(tab);
+        updateTab(tab);
+
+        if (mAutoAdjustTabMode && mAsyncTabViewInflater.getPendingCount() == 0) {
+            // all custom views have arrived
+            adjustTabMode(-1);
+        }
+    }
+
+    private void recycleTabView(TabLayout.Tab tab) {
+        if (mRecycleTabViews) {
+            mTabViewPool.release(tab.getCustomView());
+        }
+    }
+
+    private void recycleAllTabViews(TabLayout tabLayout) {
+        if (!mRecycleTabViews) {
+            return;
+        }
+
+        int count = tabLayout.getTabCount();
+        for (int i = 0; i < count && mTabViewPool.size() < mTabViewPool.getMaxSize(); i++) {
+            mTabViewPool.release(tabLayout.getTabAt(i).getCustomView());
+        }
+    }
+
+    private void setVirtualTabs(TabLayout tabLayout, PagerAdapter adapter, int currentItem) {
+        final int count = adapter.getCount();
+
+        if (!mVirtualTabsActive) {
+            recycleAllTabViews(tabLayout);
+            handleOnAllTabsRemoved();
+            tabLayout.removeAllTabs();
+            mMaterializedTabs.clear();
+            mVirtualTabsActive = true;
+        }
+
+        // remove or add placeholder tabs at the tail
+        for (int i = tabLayout.getTabCount() - 1; i >= count; i--) {
+            TabLayout.Tab tab = tabLayout.getTabAt(i);
+            if (mMaterializedTabs.get(i)) {
+                recycleTabView(tab);
+            }
+            handleOnTabRemoved(tab);
+            tabLayout.removeTab(tab);
+        }
+        if (mMaterializedTabs.length() > count) {
+            mMaterializedTabs.clear(count, mMaterializedTabs.length());
+        }
+        for (int i = tabLayout.getTabCount(); i < count; i++) {
+            TabLayout.Tab tab = tabLayout.newTab();
+            tabLayout.addTab(tab, false);
+            handleOnTabAdded(tab);
+        }
+
+        // contents of every page may have been changed, so re-bind all materialized tabs
+        updateVirtualTabs(tabLayout, adapter, Math.min(currentItem, count - 1), true);
+    }
+
+    private void updateVirtualTabs(TabLayout tabLayout, PagerAdapter adapter, int selectedPosition, boolean rebind) {
+        final int count = Math.min(tabLayout.getTabCount(), adapter.getCount());
+        if (count == 0) {
+            return;
+        }
+
+        // determine the window
+        int first;
+        int last;
+        LinearLayout slidingTabStrip = (LinearLayout) tabLayout.getChildAt(0);
+        if (tabLayout.getWidth() > 0 && !slidingTabStrip.isLayoutRequested()) {
+            int scrollX = tabLayout.getScrollX();
+            first = findTabViewAt(slidingTabStrip, scrollX);
+            last = findTabViewAt(slidingTabStrip, scrollX + tabLayout.getWidth() - 1);
+        } else {
+            first = Math.max(0, selectedPosition);
+            last = first;
+        }
+        first = Math.max(0, first - mTabVirtualizationMargin);
+        last = Math.min(count - 1, last + mTabVirtualizationMargin);
+
+        final boolean prevDuringSetTabsFromPagerAdapter = mDuringSetTabsFromPagerAdapter;
+        try {
+            mDuringSetTabsFromPagerAdapter = true;
+
+            // NOTE: tabs are bound and unbound in place, so the tab strip is not rebuilt
+            // and the selected tab is never removed
+
+            // unbind tabs which have gone out of the window (the selected tab is always kept)
+            for (int i = mMaterializedTabs.nextSetBit(0); i >= 0; i = mMaterializedTabs.nextSetBit(i + 1)) {
+                if ((i < first || i > last) && i != selectedPosition) {
+                    unbindVirtualTab(tabLayout.getTabAt(i), i);
+                }
+            }
+
+            // bind tabs in the window
+            for (int i = first; i <= last; i++) {
+                if (rebind || !mMaterializedTabs.get(i)) {
+                    bindVirtualTab(tabLayout, tabLayout.getTabAt(i), adapter, i);
+                }
+            }
+            if ((selectedPosition >= 0 && selectedPosition < count) && (selectedPosition < first || selectedPosition > last)
+                    && (rebind || !mMaterializedTabs.get(selectedPosition))) {
+                bindVirtualTab(tabLayout, tabLayout.getTabAt(selectedPosition), adapter, selectedPosition);
             }
         } finally {
-            mDuringSetTabsFromPagerAdapter = false;
+            mDuringSetTabsFromPagerAdapter = prevDuringSetTabsFromPagerAdapter;
         }
     }
 
-    protected void updateTab(TabLayout.Tab tab) {
-        onUpdateTab(tab);
+    private void bindVirtualTab(TabLayout tabLayout, TabLayout.Tab tab, PagerAdapter adapter, int position) {
+        View customView = tab.getCustomView();
+        if (customView != null && mTabViewPool.getViewType(customView) != TabViewPool.NO_VIEW_TYPE
+                && mTabViewPool.getViewType(customView) != getTabViewType(adapter, position)) {
+            // the page has been changed to another view type
+            tab.setCustomView(null);
+            mTabViewPool.release(customView);
+            customView = null;
+        }
+        if (customView == null && (mAsyncTabViewInflater == null || !mAsyncTabViewInflater.isPending(tab))) {
+            customView = obtainTabView(tabLayout, tab, adapter, position);
+            if (customView != null) {
+                tab.setCustomView(customView);
+            }
+        }
+
+        onBindTab(tab, adapter, position);
+        mMaterializedTabs.set(position);
+        updateTab(tab);
     }
 
-    protected int determineTabMode(@NonNull TabLayout tabLayout) {
-        LinearLayout slidingTabStrip = (LinearLayout) tabLayout.getChildAt(0);
+    private void unbindVirtualTab(TabLayout.Tab tab, int position) {
+        // NOTE: each setter updates the tab view, so only set contents are cleared
+        if (mAsyncTabViewInflater != null) {
+            mAsyncTabViewInflater.cancel(tab);
+        }
+        View customView = tab.getCustomView();
+        if (customView != null) {
+            tab.setCustomView(null);
+            if (mRecycleTabViews) {
+                mTabViewPool.release(customView);
+            }
+        }
+        if (tab.getText() != null) {
+            tab.setText(null);
+        }
+        if (tab.getIcon() != null) {
+            tab.setIcon(null);
+        }
+        if (tab.getContentDescription() != null) {
+            tab.setContentDescription(null);
+        }
+        tab.setTag(null);
+
+        mMaterializedTabs.clear(position);
+        mTabWidthCache.invalidate(tab);
+        recordBoundTabContents(tab);
+    }
+
+    private static int findTabViewAt(LinearLayout slidingTabStrip, int x) {
+        int lo = 0;
+        int hi = slidingTabStrip.getChildCount() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (slidingTabStrip.getChildAt(mid).getRight() <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return Math.max(0, lo);
+    }
 
-        int childCount = slidingTabStrip.getChildCount();
+    private void scheduleUpdateVirtualTabs() {
+        if (mUpdateVirtualTabsPending) {
+            return;
+        }
 
-        // NOTE: slidingTabStrip.getMeasuredWidth() method does not return correct width!
-        // Need to measure each tabs and calculate the sum of them.
+        mUpdateVirtualTabsPending = true;
+        ViewCompat.postOnAnimation(mTabLayout, mUpdateVirtualTabsRunnable);
+    }
 
-        int tabLayoutWidth = tabLayout.getMeasuredWidth() - tabLayout.getPaddingLeft() - tabLayout.getPaddingRight();
-        int tabLayoutHeight = tabLayout.getMeasuredHeight() - tabLayout.getPaddingTop() - tabLayout.getPaddingBottom();
+    private void handleUpdateVirtualTabs() {
+        if (!mVirtualTabsActive || mSetTabsFromPagerAdapterPending) {
+            // the pending rebuild updates the window
+            return;
+        }
 
-        if (childCount == 0) {
-            return TabLayout.MODE_FIXED;
+        if (mTabLayout.getChildAt(0).isLayoutRequested()) {
+            // positions of tab views are not settled yet
+            scheduleUpdateVirtualTabs();
+            return;
         }
 
-        int stripWidth = 0;
-        int maxWidthTab = 0;
-        int tabHeightMeasureSpec = View.MeasureSpec.makeMeasureSpec(tabLayoutHeight, View.MeasureSpec.EXACTLY);
+        updateVirtualTabs(mTabLayout, mViewPager.getAdapter(), mTabLayout.getSelectedTabPosition(), false);
+    }
 
-        for (int i = 0; i < childCount; i++) {
-            View tabView = slidingTabStrip.getChildAt(i);
-            tabView.measure(View.MeasureSpec.UNSPECIFIED, tabHeightMeasureSpec);
-            int tabWidth = tabView.getMeasuredWidth();
-            stripWidth += tabWidth;
-            maxWidthTab = Math.max(maxWidthTab, tabWidth);
+    private void handleOnTabLayoutScrollChanged() {
+        int scrollX = mTabLayout.getScrollX();
+        if (mVirtualTabsActive && scrollX != mLastVirtualScrollX) {
+            mLastVirtualScrollX = scrollX;
+            scheduleUpdateVirtualTabs();
         }
+    }
+
+    private void setVirtualTabsListenersEnabled(boolean enabled) {
+        if (enabled && mInternalOnAttachStateChangeListener == null) {
+            mInternalOnScrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    handleOnTabLayoutScrollChanged();
+                }
+            };
+            mInternalOnAttachStateChangeListener = new View.OnAttachStateChangeListener() {
+                @Override
+                public void onViewAttachedToWindow(View v) {
+                    v.getViewTreeObserver().addOnScrollChangedListener(mInternalOnScrollChangedListener);
+                }
+
+                @Override
+                public void onViewDetachedFromWindow(View v) {
+                    v.getViewTreeObserver().removeOnScrollChangedListener(mInternalOnScrollChangedListener);
+                }
+            };
 
-        return ((stripWidth < tabLayoutWidth) && (maxWidthTab < (tabLayoutWidth / childCount)))
-                ? TabLayout.MODE_FIXED : TabLayout.MODE_SCROLLABLE;
+            mTabLayout.addOnAttachStateChangeListener(mInternalOnAttachStateChangeListener);
+            if (ViewCompat.isAttachedToWindow(mTabLayout)) {
+                mTabLayout.getViewTreeObserver().addOnScrollChangedListener(mInternalOnScrollChangedListener);
+            }
+        } else if (!enabled && mInternalOnAttachStateChangeListener != null) {
+            mTabLayout.removeOnAttachStateChangeListener(mInternalOnAttachStateChangeListener);
+            mTabLayout.getViewTreeObserver().removeOnScrollChangedListener(mInternalOnScrollChangedListener);
+            mInternalOnAttachStateChangeListener = null;
+            mInternalOnScrollChangedListener = null;
+        }
     }
 
-    protected void adjustTabModeInternal(@NonNull TabLayout tabLayout, int prevScrollX) {
-        int prevTabMode = tabLayout.getTabMode();
+    private boolean canReconcileTabs(TabLayout tabLayout) {
+        return mTabReconciliationEnabled && (mTabKeys != null) && (mTabKeys.size() == tabLayout.getTabCount());
+    }
 
-        tabLayout.setTabMode(TabLayout.MODE_SCROLLABLE);
-        tabLayout.setTabGravity(TabLayout.GRAVITY_CENTER);
+    private void reconcileTabs(TabLayout tabLayout, PagerAdapter adapter) {
+        final TabReconciler reconciler = mTabReconciler;
+        final ArrayList<Object> newKeys = collectTabKeys(adapter, mNewTabKeys);
 
-        int newTabMode = determineTabMode(tabLayout);
+        reconciler.reconcile(mTabKeys, newKeys);
 
-        cancelPendingUpdateScrollPosition();
+        final int oldCount = reconciler.getOldCount();
+        final int newCount = reconciler.getNewCount();
 
-        if (newTabMode == TabLayout.MODE_FIXED) {
-            tabLayout.setTabGravity(TabLayout.GRAVITY_FILL);
-            tabLayout.setTabMode(TabLayout.MODE_FIXED);
-        } else {
-            LinearLayout slidingTabStrip = (LinearLayout) tabLayout.getChildAt(0);
-            slidingTabStrip.setGravity(Gravity.CENTER_HORIZONTAL);
-            if (prevTabMode == TabLayout.MODE_SCROLLABLE) {
-                // restore scroll position
-                tabLayout.scrollTo(prevScrollX, 0);
+        // remove tabs
+        // NOTE: TabLayout resets removed tabs, so contents of moved tabs have to be detached in advance
+        for (int i = oldCount - 1; i >= 0; i--) {
+            if (reconciler.isOldKept(i)) {
+                continue;
+            }
+
+            TabLayout.Tab tab = tabLayout.getTabAt(i);
+
+            if (reconciler.getNewPosition(i) != TabReconciler.NO_POSITION) {
+                obtainMovedTabContents(i, oldCount).set(tab);
             } else {
-                // scroll to current selected tab
-                mUpdateScrollPositionRunnable = new Runnable() {
-                    @Override
-                    public void run() {
-                        mUpdateScrollPositionRunnable = null;
-                        updateScrollPosition();
+                mTabsById.remove(mTabKeys.get(i));
+                recycleTabView(tab);
+            }
+
+            handleOnTabRemoved(tab);
+            tabLayout.removeTab(tab);
+        }
+
+        // insert new & moved tabs, and re-bind kept tabs
+        // NOTE: contents of a page may have been changed while its ID has not, unchanged tabs are cheap to update
+        for (int i = 0; i < newCount; i++) {
+            int oldPosition = reconciler.getOldPosition(i);
+
+            if (reconciler.isKept(i)) {
+                TabLayout.Tab tab = tabLayout.getTabAt(i);
+                onBindTab(tab, adapter, i);
+                updateTab(tab);
+            } else {
+                TabLayout.Tab tab;
+                if (oldPosition != TabReconciler.NO_POSITION) {
+                    DetachedTabContents contents = mMovedTabContents[oldPosition];
+                    tab = contents.restore(tabLayout);
+                    contents.clear();
+                    if (tab.getCustomView() == null) {
+                        // the custom view may not have arrived before the move
+                        requestAsyncTabView(tab, adapter, i);
                     }
-                };
+                    onBindTab(tab, adapter, i);
+                } else {
+                    tab = createNewTab(tabLayout, adapter, i);
+                }
+                tabLayout.addTab(tab, i, false);
+                handleOnTabAdded(tab);
+                updateTab(tab);
+            }
+        }
+
+        mNewTabKeys = mTabKeys;
+        mNewTabKeys.clear();
+        mTabKeys = newKeys;
+
+        // NOTE: keys of removed tabs have been removed, and replacing values of existing keys does not allocate
+        putTabsById(tabLayout);
+    }
+
+    private DetachedTabContents obtainMovedTabContents(int oldPosition, int oldCount) {
+        if (mMovedTabContents.length < oldCount) {
+            mMovedTabContents = Arrays.copyOf(mMovedTabContents, Math.max(oldCount, mMovedTabContents.length * 2));
+        }
+
+        DetachedTabContents contents = mMovedTabContents[oldPosition];
+        if (contents == null) {
+            contents = new DetachedTabContents();
+            mMovedTabContents[oldPosition] = contents;
+        }
+        return contents;
+    }
+
+    private void collectCurrentTabKeys() {
+        final PagerAdapter adapter = mViewPager.getAdapter();
+        if (adapter == null || mTabVirtualizationEnabled || isSetTabsFromPagerAdapterPending()
+                || adapter.getCount() != mTabLayout.getTabCount()) {
+            // tabs do not reflect the adapter, keys are collected when tabs are re-created
+            return;
+        }
+
+        mTabKeys = collectTabKeys(adapter, new ArrayList<>(adapter.getCount()));
+        updateTabsById(mTabLayout);
+    }
+
+    private boolean isSetTabsFromPagerAdapterPending() {
+        return mSetTabsFromPagerAdapterPending || mPendingBatchedDataSetChange
+                || (mDeferredUpdateTrigger != null && mDeferredUpdateTrigger.isArmed());
+    }
+
+    private void updateTabsById(TabLayout tabLayout) {
+        mTabsById.clear();
+        putTabsById(tabLayout);
+    }
+
+    private void putTabsById(TabLayout tabLayout) {
+        final ArrayList<Object> keys = mTabKeys;
+
+        // NOTE: iterates backwards, so the first tab wins if IDs are duplicated
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            mTabsById.put(keys.get(i), tabLayout.getTabAt(i));
+        }
+    }
+
+    private ArrayList<Object> collectTabKeys(PagerAdapter adapter, ArrayList<Object> keys) {
+        keys.clear();
+
+        int count = adapter.getCount();
+        keys.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(getTabId(adapter, i));
+        }
+
+        trimBoxedTabIds(keys);
+
+        return keys;
+    }
+
+    private Long boxTabId(long id) {
+        // NOTE: IDs are collected on every data set change, so boxed IDs are reused instead of allocated each time
+        Long boxedId = mBoxedTabIds.get(id);
+        if (boxedId == null) {
+            boxedId = id;
+            mBoxedTabIds.put(id, boxedId);
+        }
+        return boxedId;
+    }
+
+    private void trimBoxedTabIds(ArrayList<Object> keys) {
+        final int count = keys.size();
+        if (mBoxedTabIds.size() <= count * 2) {
+            return;
+        }
+
+        // drop IDs of removed pages
+        mBoxedTabIds.clear();
+        for (int i = 0; i < count; i++) {
+            Object key = keys.get(i);
+            if (key instanceof Long) {
+                mBoxedTabIds.put((Long) key, (Long) key);
+            }
+        }
+    }
+
+    protected int determineTabMode(@NonNull TabLayout tabLayout) {
+        return mTabModeResolver.determineTabMode(tabLayout);
+    }
+
+    protected void adjustTabModeInternal(@NonNull TabLayout tabLayout, int prevScrollX) {
+        final boolean traced = beginTraceSection(TRACE_ADJUST_TAB_MODE, tabLayout.getTabCount());
+        try {
+            int prevTabMode = tabLayout.getTabMode();
+
+            mTabModeResolver.prepareToDetermineTabMode(tabLayout);
+
+            final MetricsListener metrics = mMetricsListener;
+            final long startTime = (metrics != null) ? System.nanoTime() : 0;
+            mTabModeResolver.resetMeasureCount();
+
+            final boolean tracedDetermine = beginTraceSection(TRACE_DETERMINE_TAB_MODE, tabLayout.getTabCount());
+            int newTabMode;
+            try {
+                newTabMode = determineTabMode(tabLayout);
+            } finally {
+                endTraceSection(tracedDetermine);
+            }
+
+            if (metrics != null) {
+                metrics.onTabModeDetermined(tabLayout.getTabCount(), mTabModeResolver.getMeasureCount(), System.nanoTime() - startTime);
+                metrics.onTabModeAdjusted(newTabMode);
+            }
+
+            cancelPendingUpdateScrollPosition();
+
+            if (TabModeResolver.applyTabMode(tabLayout, prevTabMode, newTabMode, prevScrollX)) {
+                // scroll to current selected tab
+                mUpdateScrollPositionPending = true;
                 mTabLayout.post(mUpdateScrollPositionRunnable);
             }
+        } finally {
+            endTraceSection(traced);
+        }
+    }
+
+    private boolean beginTraceSection(String sectionName) {
+        if (!mTraceEnabled) {
+            return false;
+        }
+        TraceCompat.beginSection(sectionName);
+        return true;
+    }
+
+    private boolean beginTraceSection(String sectionName, int tabCount) {
+        if (!mTraceEnabled) {
+            return false;
+        }
+        TraceCompat.beginSection(sectionName + " (" + tabCount + " tabs)");
+        return true;
+    }
+
+    private static void endTraceSection(boolean traced) {
+        if (traced) {
+            TraceCompat.endSection();
         }
     }
 
@@ -440,19 +1984,198 @@ public class TabLayoutHelper {
         mTabLayout.setScrollPosition(mTabLayout.getSelectedTabPosition(), 0, false);
     }
 
+    /**
+     * Listener which is notified when a tab is pressed. All methods are called on the UI thread.
+     */
+    public interface OnTabPressListener {
+        /**
+         * Called when a tab other than the selected one has been touched down.
+         * The page at the position is likely to be selected soon.
+         *
+         * @param position Position of the tab
+         */
+        void onTabPressed(int position);
+
+        /**
+         * Called when the press has been cancelled without selecting the tab,
+         * e.g. the gesture has turned into a scroll of the tab strip.
+         *
+         * @param position Position of the tab
+         */
+        void onTabPressCancelled(int position);
+    }
+
+    /**
+     * Listener which receives performance metrics of {@link TabLayoutHelper}.
+     * All methods are called on the UI thread.
+     */
+    public interface MetricsListener {
+        /**
+         * Called when tabs have been updated from the PagerAdapter.
+         *
+         * @param tabCount      Number of tabs
+         * @param durationNanos Elapsed time in nanoseconds
+         */
+        void onTabsUpdated(int tabCount, long durationNanos);
+
+        /**
+         * Called when a data set change has been merged into the pending tabs update.
+         */
+        void onTabsUpdateCoalesced();
+
+        /**
+         * Called when a deferred tabs update is executed.
+         */
+        void onTabsUpdateExecuted();
+
+        /**
+         * Called when the tab mode has been determined by {@link TabLayoutHelper#determineTabMode(TabLayout)}.
+         *
+         * @param tabCount      Number of tabs
+         * @param measureCount  Number of measured tab views
+         * @param durationNanos Elapsed time in nanoseconds
+         */
+        void onTabModeDetermined(int tabCount, int measureCount, long durationNanos);
+
+        /**
+         * Called when the tab mode has been adjusted automatically.
+         *
+         * @param tabMode {@link TabLayout#MODE_FIXED} or {@link TabLayout#MODE_SCROLLABLE}
+         */
+        void onTabModeAdjusted(int tabMode);
+
+        /**
+         * Called after tabs have been updated while tab prefetching is enabled.
+         * If misses are frequent, increase the reserve via {@link TabLayoutHelper#setTabPrefetchReserveSize(int)}.
+         *
+         * @param hitCount  Number of new tabs taken from the reserve
+         * @param missCount Number of new tabs created because the reserve was empty
+         */
+        void onTabPrefetchResult(int hitCount, int missCount);
+    }
+
+    /**
+     * Empty implementation of {@link MetricsListener}.
+     */
+    public static class SimpleMetricsListener implements MetricsListener {
+        @Override
+        public void onTabsUpdated(int tabCount, long durationNanos) {
+        }
+
+        @Override
+        public void onTabsUpdateCoalesced() {
+        }
+
+        @Override
+        public void onTabsUpdateExecuted() {
+        }
+
+        @Override
+        public void onTabModeDetermined(int tabCount, int measureCount, long durationNanos) {
+        }
+
+        @Override
+        public void onTabModeAdjusted(int tabMode) {
+        }
+
+        @Override
+        public void onTabPrefetchResult(int hitCount, int missCount) {
+        }
+    }
+
+    /**
+     * Interface for PagerAdapter which provides stable tab IDs.
+     * Tabs having the same ID are preserved across data set changes while tab reconciliation is enabled.
+     */
+    public interface TabIdProvider {
+        /**
+         * Gets the stable ID of the item.
+         *
+         * @param position Position of the item
+         * @return Stable ID
+         */
+        long getTabId(int position);
+    }
+
     protected static class FixedTabLayoutOnPageChangeListener implements ViewPager.OnPageChangeListener {
         private final WeakReference<TabLayout> mTabLayoutRef;
-        private int mPreviousScrollState;
-        private int mScrollState;
+        private final PageScrollStateTracker mScrollStateTracker = new PageScrollStateTracker();
+        private final TabLayout.TabLayoutOnPageChangeListener mSelectTabDelegate;
+        private boolean mThrottlingEnabled;
+        private boolean mSkipSubPixelUpdates;
+
+        private boolean mHasPendingScrollPosition;
+        private int mPendingPosition;
+        private float mPendingPositionOffset;
+        private boolean mPendingUpdateText;
+        private int mLastPosition = -1;
+        private int mLastOffsetPixels;
+        private boolean mLastUpdateText;
+        private final Runnable mApplyPendingScrollPositionRunnable = new Runnable() {
+            @Override
+            public void run() {
+                applyPendingScrollPosition();
+            }
+        };
 
         public FixedTabLayoutOnPageChangeListener(TabLayout tabLayout) {
             mTabLayoutRef = new WeakReference<>(tabLayout);
+            // NOTE: TabLayout.selectTab(Tab, boolean) is not public, but this listener can call it directly.
+            // Unlike Method.invoke(), it neither allocates an argument array nor boxes the boolean.
+            mSelectTabDelegate = new TabLayout.TabLayoutOnPageChangeListener(tabLayout);
+        }
+
+        /**
+         * Sets whether scroll position updates are applied once per animation frame.
+         *
+         * @param enabled True for enabled, otherwise false.
+         */
+        public void setThrottlingEnabled(boolean enabled) {
+            mThrottlingEnabled = enabled;
+            if (!enabled) {
+                applyPendingScrollPosition();
+            }
+        }
+
+        public boolean isThrottlingEnabled() {
+            return mThrottlingEnabled;
+        }
+
+        /**
+         * Sets whether scroll position updates which move the indicator less than a pixel are skipped.
+         *
+         * @param enabled True for enabled, otherwise false.
+         */
+        public void setSkipSubPixelUpdatesEnabled(boolean enabled) {
+            mSkipSubPixelUpdates = enabled;
+            mLastPosition = -1;
+        }
+
+        public boolean isSkipSubPixelUpdatesEnabled() {
+            return mSkipSubPixelUpdates;
+        }
+
+        public void cancelPendingScrollPosition() {
+            if (mHasPendingScrollPosition) {
+                mHasPendingScrollPosition = false;
+                final TabLayout tabLayout = mTabLayoutRef.get();
+                if (tabLayout != null) {
+                    tabLayout.removeCallbacks(mApplyPendingScrollPositionRunnable);
+                }
+            }
         }
 
         @Override
         public void onPageScrollStateChanged(int state) {
-            mPreviousScrollState = mScrollState;
-            mScrollState = state;
+            mScrollStateTracker.onPageScrollStateChanged(state);
+
+            if (state == ViewPager.SCROLL_STATE_IDLE) {
+                // apply the final position without waiting for the next frame
+                applyPendingScrollPosition();
+            }
+
+            // the indicator may have been moved by others
+            mLastPosition = -1;
         }
 
         @Override
@@ -460,13 +2183,23 @@ public class TabLayoutHelper {
                                    int positionOffsetPixels) {
             final TabLayout tabLayout = mTabLayoutRef.get();
             if (tabLayout != null) {
-                if (shouldUpdateScrollPosition()) {
+                if (mScrollStateTracker.shouldUpdateScrollPosition()) {
                     // Update the scroll position, only update the text selection if we're being
                     // dragged (or we're settling after a drag)
-                    final boolean updateText = (mScrollState == ViewPager.SCROLL_STATE_DRAGGING)
-                            || (mScrollState == ViewPager.SCROLL_STATE_SETTLING
-                            && mPreviousScrollState == ViewPager.SCROLL_STATE_DRAGGING);
-                    tabLayout.setScrollPosition(position, positionOffset, updateText);
+                    final boolean updateText = mScrollStateTracker.shouldUpdateText();
+
+                    if (mThrottlingEnabled) {
+                        // keep the latest one only, and apply it at the next frame
+                        mPendingPosition = position;
+                        mPendingPositionOffset = positionOffset;
+                        mPendingUpdateText = updateText;
+                        if (!mHasPendingScrollPosition) {
+                            mHasPendingScrollPosition = true;
+                            ViewCompat.postOnAnimation(tabLayout, mApplyPendingScrollPositionRunnable);
+                        }
+                    } else {
+                        setScrollPosition(tabLayout, position, positionOffset, updateText);
+                    }
                 }
             }
         }
@@ -477,52 +2210,108 @@ public class TabLayoutHelper {
             if (tabLayout != null && tabLayout.getSelectedTabPosition() != position) {
                 // Select the tab, only updating the indicator if we're not being dragged/settled
                 // (since onPageScrolled will handle that).
-                Internal.selectTab(tabLayout, tabLayout.getTabAt(position),
-                        mScrollState == ViewPager.SCROLL_STATE_IDLE);
+                selectTab(position, mScrollStateTracker.shouldUpdateIndicatorOnPageSelected());
             }
         }
 
-        private boolean shouldUpdateScrollPosition() {
-            return (mScrollState == ViewPager.SCROLL_STATE_DRAGGING) ||
-                    ((mScrollState == ViewPager.SCROLL_STATE_SETTLING) && (mPreviousScrollState == ViewPager.SCROLL_STATE_DRAGGING));
+        private void selectTab(int position, boolean updateIndicator) {
+            // the delegate updates the indicator in SCROLL_STATE_IDLE, and does not in SCROLL_STATE_DRAGGING
+            mSelectTabDelegate.onPageScrollStateChanged(
+                    updateIndicator ? ViewPager.SCROLL_STATE_IDLE : ViewPager.SCROLL_STATE_DRAGGING);
+            mSelectTabDelegate.onPageSelected(position);
         }
-    }
 
+        private void applyPendingScrollPosition() {
+            if (!mHasPendingScrollPosition) {
+                return;
+            }
 
-    static class Internal {
-        private static final Method mMethodSelectTab;
+            final TabLayout tabLayout = mTabLayoutRef.get();
 
-        static {
-            mMethodSelectTab = getAccessiblePrivateMethod(TabLayout.class, "selectTab", TabLayout.Tab.class, boolean.class);
-        }
+            cancelPendingScrollPosition();
 
-        private static Method getAccessiblePrivateMethod(Class<?> targetClass, String methodName, Class<?>... params) throws RuntimeException {
-            try {
-                Method m = targetClass.getDeclaredMethod(methodName, params);
-                m.setAccessible(true);
-                return m;
-            } catch (NoSuchMethodException e) {
-                throw new IllegalStateException(e);
+            if (tabLayout != null) {
+                setScrollPosition(tabLayout, mPendingPosition, mPendingPositionOffset, mPendingUpdateText);
             }
         }
 
-        public static void selectTab(TabLayout tabLayout, TabLayout.Tab tab, boolean updateIndicator) {
-            try {
-                mMethodSelectTab.invoke(tabLayout, tab, updateIndicator);
-            } catch (IllegalAccessException e) {
-                new IllegalStateException(e);
-            } catch (InvocationTargetException e) {
-                throw handleInvocationTargetException(e);
+        private void setScrollPosition(TabLayout tabLayout, int position, float positionOffset, boolean updateText) {
+            if (mSkipSubPixelUpdates) {
+                // the indicator moves (positionOffset * width of the tab) pixels
+                View tabView = ((LinearLayout) tabLayout.getChildAt(0)).getChildAt(position);
+                int offsetPixels = (tabView != null) ? Math.round(positionOffset * tabView.getWidth()) : 0;
+
+                if (position == mLastPosition && offsetPixels == mLastOffsetPixels && updateText == mLastUpdateText) {
+                    return;
+                }
+
+                mLastPosition = position;
+                mLastOffsetPixels = offsetPixels;
+                mLastUpdateText = updateText;
             }
+
+            tabLayout.setScrollPosition(position, positionOffset, updateText);
+        }
+    }
+
+    private static class BoundTabContents {
+        private CharSequence mText;
+        private Drawable mIcon;
+        private CharSequence mContentDescription;
+
+        void set(TabLayout.Tab tab) {
+            mText = tab.getText();
+            mIcon = tab.getIcon();
+            mContentDescription = tab.getContentDescription();
         }
 
-        private static RuntimeException handleInvocationTargetException(InvocationTargetException e) {
-            Throwable targetException = e.getTargetException();
-            if (targetException instanceof RuntimeException) {
-                throw (RuntimeException) targetException;
-            } else {
-                throw new IllegalStateException(targetException);
+        boolean matches(TabLayout.Tab tab) {
+            return (mIcon == tab.getIcon())
+                    && TextUtils.equals(mText, tab.getText())
+                    && TextUtils.equals(mContentDescription, tab.getContentDescription());
+        }
+    }
+
+    static class DetachedTabContents {
+        private Object mTag;
+        private Drawable mIcon;
+        private CharSequence mText;
+        private CharSequence mContentDescription;
+        private View mCustomView;
+
+        DetachedTabContents() {
+        }
+
+        DetachedTabContents(TabLayout.Tab tab) {
+            set(tab);
+        }
+
+        void set(TabLayout.Tab tab) {
+            mTag = tab.getTag();
+            mIcon = tab.getIcon();
+            mText = tab.getText();
+            mContentDescription = tab.getContentDescription();
+            mCustomView = tab.getCustomView();
+        }
+
+        void clear() {
+            mTag = null;
+            mIcon = null;
+            mText = null;
+            mContentDescription = null;
+            mCustomView = null;
+        }
+
+        TabLayout.Tab restore(TabLayout tabLayout) {
+            TabLayout.Tab tab = tabLayout.newTab();
+            if (mCustomView != null) {
+                tab.setCustomView(mCustomView);
             }
+            tab.setTag(mTag);
+            tab.setIcon(mIcon);
+            tab.setText(mText);
+            tab.setContentDescription(mContentDescription);
+            return tab;
         }
     }
 }
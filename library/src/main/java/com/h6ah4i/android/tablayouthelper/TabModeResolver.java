@@ -0,0 +1,325 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.util.Log;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.LinearLayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.material.tabs.TabLayout;
+
+import java.lang.reflect.Field;
+
+/**
+ * Determines whether tabs fit in {@link TabLayout#MODE_FIXED}, measuring tab views as few as possible.
+ * Also holds the tab mode policies shared by {@link TabLayoutHelper} and
+ * {@link ViewPager2TabLayoutHelper}: applying the tab mode and watching width changes of the TabLayout.
+ */
+class TabModeResolver {
+    private static final String TAG = "TabModeResolver";
+    private static final int INVALID_WIDTH = -1;
+
+    // NOTE: resolved lazily on the first use, and accessed only from the UI thread
+    private static boolean sTabMinWidthFieldsResolved;
+    private static Field sFieldRequestedTabMinWidth;
+    private static Field sFieldScrollableTabMinWidth;
+
+    private final TabWidthCache mTabWidthCache = new TabWidthCache();
+    private int mMeasureCount;
+    private int mTabMinWidth;
+    private final TabModeDecisionEngine mEngine = new TabModeDecisionEngine();
+    private TabLayout mObservedTabLayout;
+    private View.OnLayoutChangeListener mOnLayoutChangeListener;
+
+    public TabWidthCache getTabWidthCache() {
+        return mTabWidthCache;
+    }
+
+    /**
+     * Gets the number of tab views measured since the last {@link #resetMeasureCount()} call.
+     *
+     * @return Number of measured tab views
+     */
+    public int getMeasureCount() {
+        return mMeasureCount;
+    }
+
+    public void resetMeasureCount() {
+        mMeasureCount = 0;
+    }
+
+    public int getHysteresis() {
+        return mEngine.getHysteresis();
+    }
+
+    /**
+     * Sets the extra space required to switch from {@link TabLayout#MODE_SCROLLABLE} to {@link TabLayout#MODE_FIXED}.
+     * Tabs stay in {@link TabLayout#MODE_FIXED} until they do not fit at all.
+     *
+     * @param hysteresis Extra space in pixels
+     */
+    public void setHysteresis(int hysteresis) {
+        if (hysteresis < 0) {
+            throw new IllegalArgumentException("hysteresis must be >= 0");
+        }
+        mEngine.setHysteresis(hysteresis);
+    }
+
+    /**
+     * Sets the listener which is called when the width of the TabLayout has been changed
+     * (rotations, multi-window resizes, etc.). It is called during the layout pass.
+     *
+     * @param tabLayout TabLayout
+     * @param listener  Listener, or null to stop watching the width
+     */
+    public void setOnWidthChangedListener(@NonNull TabLayout tabLayout, @Nullable final Runnable listener) {
+        if (mOnLayoutChangeListener != null) {
+            mObservedTabLayout.removeOnLayoutChangeListener(mOnLayoutChangeListener);
+            mOnLayoutChangeListener = null;
+            mObservedTabLayout = null;
+        }
+
+        if (listener != null) {
+            mOnLayoutChangeListener = new View.OnLayoutChangeListener() {
+                @Override
+                public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                           int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    if ((right - left) != (oldRight - oldLeft)) {
+                        listener.run();
+                    }
+                }
+            };
+            mObservedTabLayout = tabLayout;
+            tabLayout.addOnLayoutChangeListener(mOnLayoutChangeListener);
+        }
+    }
+
+    /**
+     * Gets how the scroll position should be restored after the tab mode has been adjusted.
+     *
+     * @param prevTabMode Tab mode before the adjustment
+     * @param newTabMode  Tab mode after the adjustment
+     * @return One of {@link TabModeDecisionEngine}.SCROLL_RESTORATION_XXX constants
+     */
+    public static int getScrollRestoration(int prevTabMode, int newTabMode) {
+        return TabModeDecisionEngine.getScrollRestoration(toEngineTabMode(prevTabMode), toEngineTabMode(newTabMode));
+    }
+
+    /**
+     * Gets whether {@link #determineTabMode(TabLayout)} can be called without switching the tab layout to
+     * {@link TabLayout#MODE_SCROLLABLE}.
+     *
+     * @param tabLayout TabLayout
+     * @return True if tab views can be measured in the current mode.
+     */
+    public boolean canMeasureInPlace(@NonNull TabLayout tabLayout) {
+        return (tabLayout.getTabMode() == TabLayout.MODE_SCROLLABLE)
+                || (getScrollableTabMinWidth(tabLayout) != INVALID_WIDTH);
+    }
+
+    /**
+     * Switches the tab layout to {@link TabLayout#MODE_SCROLLABLE} if tab views cannot be measured
+     * in the current mode. Call this before {@link #determineTabMode(TabLayout)}.
+     *
+     * @param tabLayout TabLayout
+     */
+    public void prepareToDetermineTabMode(@NonNull TabLayout tabLayout) {
+        if (!canMeasureInPlace(tabLayout)) {
+            // tab views have to be measured with the minimum width of MODE_SCROLLABLE
+            tabLayout.setTabMode(TabLayout.MODE_SCROLLABLE);
+            tabLayout.setTabGravity(TabLayout.GRAVITY_CENTER);
+        }
+    }
+
+    /**
+     * Applies the tab mode and gravity determined by {@link #determineTabMode(TabLayout)}.
+     *
+     * @param tabLayout   TabLayout
+     * @param prevTabMode Tab mode before {@link #prepareToDetermineTabMode(TabLayout)}
+     * @param newTabMode  Determined tab mode
+     * @param prevScrollX Scroll position to restore
+     * @return True if the selected tab has to be scrolled into view.
+     */
+    public static boolean applyTabMode(@NonNull TabLayout tabLayout, int prevTabMode, int newTabMode, int prevScrollX) {
+        if (newTabMode == TabLayout.MODE_FIXED) {
+            tabLayout.setTabGravity(TabLayout.GRAVITY_FILL);
+            tabLayout.setTabMode(TabLayout.MODE_FIXED);
+            return false;
+        }
+
+        tabLayout.setTabMode(TabLayout.MODE_SCROLLABLE);
+        tabLayout.setTabGravity(TabLayout.GRAVITY_CENTER);
+        LinearLayout slidingTabStrip = (LinearLayout) tabLayout.getChildAt(0);
+        slidingTabStrip.setGravity(Gravity.CENTER_HORIZONTAL);
+
+        if (getScrollRestoration(prevTabMode, newTabMode) == TabModeDecisionEngine.SCROLL_RESTORATION_RESTORE_SCROLL_X) {
+            // restore scroll position
+            tabLayout.scrollTo(prevScrollX, 0);
+            return false;
+        }
+
+        // scroll to current selected tab
+        return true;
+    }
+
+    public int determineTabMode(@NonNull TabLayout tabLayout) {
+        LinearLayout slidingTabStrip = (LinearLayout) tabLayout.getChildAt(0);
+
+        int childCount = slidingTabStrip.getChildCount();
+
+        // NOTE: slidingTabStrip.getMeasuredWidth() method does not return correct width!
+        // Need to measure each tabs and calculate the sum of them.
+
+        int tabLayoutWidth = tabLayout.getMeasuredWidth() - tabLayout.getPaddingLeft() - tabLayout.getPaddingRight();
+        int tabLayoutHeight = tabLayout.getMeasuredHeight() - tabLayout.getPaddingTop() - tabLayout.getPaddingBottom();
+
+        if (childCount == 0) {
+            return TabLayout.MODE_FIXED;
+        }
+
+        long stripWidth = 0;
+        int maxWidthTab = 0;
+        int tabHeightMeasureSpec = View.MeasureSpec.makeMeasureSpec(tabLayoutHeight, View.MeasureSpec.EXACTLY);
+
+        // tab views have the minimum width of MODE_SCROLLABLE only while the tab layout is in the mode
+        if (tabLayout.getTabMode() == TabLayout.MODE_SCROLLABLE) {
+            mTabMinWidth = 0;
+        } else {
+            mTabMinWidth = Math.max(0, getScrollableTabMinWidth(tabLayout));
+        }
+
+        final TabWidthCache widthCache = mTabWidthCache;
+        widthCache.setMeasureConditions(
+                tabLayout.getResources().getConfiguration(), tabLayoutWidth, tabHeightMeasureSpec);
+
+        int memoizedTabMode = mEngine.findMemoizedTabMode(tabLayoutWidth, widthCache.getContentGeneration());
+        if (memoizedTabMode != TabModeDecisionEngine.NO_TAB_MODE) {
+            // same width and same contents, no need to measure
+            return toTabLayoutTabMode(memoizedTabMode);
+        }
+
+        if (widthCache.isTracking(childCount)
+                && measureDirtyTabs(tabLayout, slidingTabStrip, tabHeightMeasureSpec)) {
+            // every tab is tracked, only changed tabs have been measured
+            stripWidth = widthCache.getWidthSum();
+            maxWidthTab = widthCache.getMaxWidth();
+        } else {
+            widthCache.beginFullWalk();
+
+            for (int i = 0; i < childCount; i++) {
+                // measure only tabs whose contents have been changed
+                TabLayout.Tab tab = tabLayout.getTabAt(i);
+                int tabWidth = (tab != null) ? widthCache.get(tab) : TabWidthCache.NO_WIDTH;
+                if (tabWidth == TabWidthCache.NO_WIDTH) {
+                    tabWidth = measureTabView(slidingTabStrip.getChildAt(i), tabHeightMeasureSpec);
+                }
+                if (tab != null) {
+                    widthCache.put(tab, tabWidth);
+                }
+                stripWidth += tabWidth;
+                maxWidthTab = Math.max(maxWidthTab, tabWidth);
+            }
+
+            widthCache.endFullWalk();
+        }
+
+        return toTabLayoutTabMode(mEngine.determineTabMode(
+                tabLayoutWidth, childCount, stripWidth, maxWidthTab, widthCache.getContentGeneration()));
+    }
+
+    private static int toEngineTabMode(int tabMode) {
+        return (tabMode == TabLayout.MODE_FIXED) ? TabModeDecisionEngine.MODE_FIXED : TabModeDecisionEngine.MODE_SCROLLABLE;
+    }
+
+    private static int toTabLayoutTabMode(int tabMode) {
+        return (tabMode == TabModeDecisionEngine.MODE_FIXED) ? TabLayout.MODE_FIXED : TabLayout.MODE_SCROLLABLE;
+    }
+
+    private boolean measureDirtyTabs(TabLayout tabLayout, LinearLayout slidingTabStrip, int tabHeightMeasureSpec) {
+        final TabWidthCache widthCache = mTabWidthCache;
+        final int tabCount = slidingTabStrip.getChildCount();
+        final int dirtyCount = widthCache.getDirtyCount();
+
+        for (int i = 0; i < dirtyCount; i++) {
+            TabLayout.Tab tab = widthCache.getDirtyTab(i);
+            if (tab == null) {
+                continue;
+            }
+
+            int position = tab.getPosition();
+            if (position < 0 || position >= tabCount || tabLayout.getTabAt(position) != tab) {
+                // tabs have been modified without notifying to this helper
+                return false;
+            }
+
+            widthCache.put(tab, measureTabView(slidingTabStrip.getChildAt(position), tabHeightMeasureSpec));
+        }
+
+        widthCache.clearDirtyTabs();
+
+        return true;
+    }
+
+    private int measureTabView(View tabView, int tabHeightMeasureSpec) {
+        mMeasureCount++;
+        tabView.measure(View.MeasureSpec.UNSPECIFIED, tabHeightMeasureSpec);
+        return Math.max(tabView.getMeasuredWidth(), mTabMinWidth);
+    }
+
+    private static int getScrollableTabMinWidth(TabLayout tabLayout) {
+        if (!sTabMinWidthFieldsResolved) {
+            sTabMinWidthFieldsResolved = true;
+            // field names differ between versions of the material components library
+            sFieldRequestedTabMinWidth = getDeclaredIntField("requestedTabMinWidth", "mRequestedTabMinWidth");
+            sFieldScrollableTabMinWidth = getDeclaredIntField("scrollableTabMinWidth", "mScrollableTabMinWidth");
+            if (sFieldRequestedTabMinWidth == null || sFieldScrollableTabMinWidth == null) {
+                Log.w(TAG, "Minimum tab width is not available, tab mode is switched temporarily to measure tabs");
+            }
+        }
+
+        if (sFieldRequestedTabMinWidth == null || sFieldScrollableTabMinWidth == null) {
+            return INVALID_WIDTH;
+        }
+
+        try {
+            int requestedTabMinWidth = sFieldRequestedTabMinWidth.getInt(tabLayout);
+            return (requestedTabMinWidth != INVALID_WIDTH)
+                    ? requestedTabMinWidth : sFieldScrollableTabMinWidth.getInt(tabLayout);
+        } catch (IllegalAccessException e) {
+            return INVALID_WIDTH;
+        }
+    }
+
+    private static Field getDeclaredIntField(String... names) {
+        for (String name : names) {
+            try {
+                Field f = TabLayout.class.getDeclaredField(name);
+                if (f.getType() == int.class) {
+                    f.setAccessible(true);
+                    return f;
+                }
+            } catch (NoSuchFieldException | SecurityException e) {
+                // try next one
+            }
+        }
+        return null;
+    }
+}
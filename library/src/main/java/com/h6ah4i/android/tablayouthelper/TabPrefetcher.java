@@ -0,0 +1,140 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.material.tabs.TabLayout;
+
+import java.util.ArrayDeque;
+
+/**
+ * Keeps a reserve of pre-created tabs (and tab views via the factory) filled while the UI thread is idle.
+ *
+ * One item is created per idle period, so a burst of work never blocks a frame for long. The reserve
+ * is refilled when {@link #schedule()} is called after items have been taken.
+ */
+class TabPrefetcher implements MessageQueue.IdleHandler {
+    interface Factory {
+        @NonNull
+        TabLayout.Tab createTab();
+
+        /**
+         * Gets whether more tab views should be created.
+         *
+         * @return True if {@link #prefetchTabView()} should be called
+         */
+        boolean needsTabView();
+
+        /**
+         * Creates a tab view and keeps it for the next tab.
+         */
+        void prefetchTabView();
+    }
+
+    private final TabLayout mTabLayout;
+    private final Factory mFactory;
+    private final ArrayDeque<TabLayout.Tab> mTabs = new ArrayDeque<>();
+    private int mReserveSize;
+    private boolean mScheduled;
+
+    private final Runnable mAddIdleHandlerRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Looper.myQueue().addIdleHandler(TabPrefetcher.this);
+        }
+    };
+
+    TabPrefetcher(TabLayout tabLayout, Factory factory) {
+        mTabLayout = tabLayout;
+        mFactory = factory;
+    }
+
+    public int getReserveSize() {
+        return mReserveSize;
+    }
+
+    public void setReserveSize(int size) {
+        mReserveSize = size;
+        while (mTabs.size() > size) {
+            mTabs.pollLast();
+        }
+        schedule();
+    }
+
+    public int getReservedTabCount() {
+        return mTabs.size();
+    }
+
+    /**
+     * Takes a pre-created tab.
+     *
+     * @return Tab, or null if the reserve is empty
+     */
+    public TabLayout.Tab obtainTab() {
+        return mTabs.pollFirst();
+    }
+
+    /**
+     * Starts refilling the reserve when the UI thread becomes idle.
+     */
+    public void schedule() {
+        if (mScheduled || !needsMore()) {
+            return;
+        }
+        mScheduled = true;
+        Looper.myQueue().addIdleHandler(this);
+    }
+
+    public void cancel() {
+        if (!mScheduled) {
+            return;
+        }
+        mScheduled = false;
+        Looper.myQueue().removeIdleHandler(this);
+        mTabLayout.removeCallbacks(mAddIdleHandlerRunnable);
+    }
+
+    public void clear() {
+        cancel();
+        mTabs.clear();
+    }
+
+    @Override
+    public boolean queueIdle() {
+        if (mTabs.size() < mReserveSize) {
+            mTabs.addLast(mFactory.createTab());
+        } else if (mFactory.needsTabView()) {
+            mFactory.prefetchTabView();
+        }
+
+        if (needsMore()) {
+            // NOTE: idle handlers are invoked once per idle period, so the next item is created after the next message
+            mTabLayout.post(mAddIdleHandlerRunnable);
+        } else {
+            mScheduled = false;
+        }
+        return false;
+    }
+
+    private boolean needsMore() {
+        return (mTabs.size() < mReserveSize) || mFactory.needsTabView();
+    }
+}
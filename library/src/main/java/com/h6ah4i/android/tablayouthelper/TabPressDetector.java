@@ -0,0 +1,132 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.google.android.material.tabs.TabLayout;
+
+/**
+ * Watches touch-downs on tab views and reports the tab which is likely to be selected.
+ *
+ * The press is cancelled when the gesture turns into a scroll of the tab strip (the tab view receives
+ * {@link MotionEvent#ACTION_CANCEL}), when the finger is released outside of the tab view, or when
+ * tab views are removed. Touch events are never consumed.
+ */
+class TabPressDetector implements View.OnTouchListener, ViewGroup.OnHierarchyChangeListener {
+    private static final int NO_POSITION = -1;
+
+    private final TabLayout mTabLayout;
+    private final TabLayoutHelper.OnTabPressListener mListener;
+    private int mPressedPosition = NO_POSITION;
+    private boolean mAttached;
+
+    TabPressDetector(TabLayout tabLayout, TabLayoutHelper.OnTabPressListener listener) {
+        mTabLayout = tabLayout;
+        mListener = listener;
+    }
+
+    public void attach() {
+        if (mAttached) {
+            return;
+        }
+        mAttached = true;
+
+        ViewGroup slidingTabStrip = (ViewGroup) mTabLayout.getChildAt(0);
+        // NOTE: tab views are added and removed by TabLayout, so listeners are set as they come
+        slidingTabStrip.setOnHierarchyChangeListener(this);
+        for (int i = 0; i < slidingTabStrip.getChildCount(); i++) {
+            slidingTabStrip.getChildAt(i).setOnTouchListener(this);
+        }
+    }
+
+    public void detach() {
+        if (!mAttached) {
+            return;
+        }
+        mAttached = false;
+
+        cancelPress();
+
+        ViewGroup slidingTabStrip = (ViewGroup) mTabLayout.getChildAt(0);
+        slidingTabStrip.setOnHierarchyChangeListener(null);
+        for (int i = 0; i < slidingTabStrip.getChildCount(); i++) {
+            slidingTabStrip.getChildAt(i).setOnTouchListener(null);
+        }
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                handleOnDown(v);
+                break;
+            case MotionEvent.ACTION_UP:
+                if (isInside(v, event)) {
+                    // the tab is going to be selected
+                    mPressedPosition = NO_POSITION;
+                } else {
+                    cancelPress();
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                cancelPress();
+                break;
+        }
+        return false;
+    }
+
+    @Override
+    public void onChildViewAdded(View parent, View child) {
+        child.setOnTouchListener(this);
+    }
+
+    @Override
+    public void onChildViewRemoved(View parent, View child) {
+        child.setOnTouchListener(null);
+        // positions are no longer valid
+        cancelPress();
+    }
+
+    private void handleOnDown(View v) {
+        cancelPress();
+
+        int position = ((ViewGroup) mTabLayout.getChildAt(0)).indexOfChild(v);
+        if (position < 0 || position == mTabLayout.getSelectedTabPosition()) {
+            return;
+        }
+
+        mPressedPosition = position;
+        mListener.onTabPressed(position);
+    }
+
+    private void cancelPress() {
+        if (mPressedPosition != NO_POSITION) {
+            int position = mPressedPosition;
+            mPressedPosition = NO_POSITION;
+            mListener.onTabPressCancelled(position);
+        }
+    }
+
+    private static boolean isInside(View v, MotionEvent event) {
+        float x = event.getX();
+        float y = event.getY();
+        return (x >= 0) && (y >= 0) && (x < v.getWidth()) && (y < v.getHeight());
+    }
+}
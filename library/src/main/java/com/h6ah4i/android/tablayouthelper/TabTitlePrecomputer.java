@@ -0,0 +1,167 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Precomputes text layout of tab titles on a background executor.
+ *
+ * {@link PrecomputedTextCompat#create(CharSequence, PrecomputedTextCompat.Params)} measures the text
+ * with the given text metrics, which fills the shared text layout cache of the framework. Tab text
+ * views measured with the same metrics afterwards (both by the tab mode decision and by the layout
+ * pass) take word widths from the cache. Recently precomputed titles are remembered, so only new
+ * titles are measured in background. The framework cache is bounded, so only the most recently used
+ * {@link #MAX_PRECOMPUTED_TITLES} titles are remembered.
+ */
+class TabTitlePrecomputer {
+    static final int MAX_PRECOMPUTED_TITLES = 512;
+
+    // NOTE: View.post() from a background thread is not delivered while the view is detached (before API 24)
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Executor mExecutor;
+    private PrecomputedTextCompat.Params mParams;
+    // access ordered, so the least recently used title is dropped first
+    private final LinkedHashMap<CharSequence, Boolean> mPrecomputedTitles =
+            new LinkedHashMap<CharSequence, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CharSequence, Boolean> eldest) {
+                    return size() > MAX_PRECOMPUTED_TITLES;
+                }
+            };
+    private PrecomputeTask mSpareTask;
+    private int mGeneration;
+    private boolean mRunning;
+
+    TabTitlePrecomputer(@NonNull Executor executor) {
+        mExecutor = executor;
+    }
+
+    public void setParams(@NonNull PrecomputedTextCompat.Params params) {
+        if (!params.equals(mParams)) {
+            mParams = params;
+            mPrecomputedTitles.clear();
+        }
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Starts precomputing titles which have not been precomputed recently.
+     *
+     * @param titles     Titles of tabs to be bound
+     * @param onComplete Runs on the UI thread when all titles have been precomputed
+     * @return True if started, false if there is nothing to precompute.
+     */
+    public boolean precompute(@NonNull List<CharSequence> titles, @NonNull Runnable onComplete) {
+        // NOTE: a cancelled task may still be running, so it is reused only after it has finished
+        PrecomputeTask task = (mSpareTask != null) ? mSpareTask : new PrecomputeTask();
+        mSpareTask = null;
+
+        final ArrayList<CharSequence> missingTitles = task.mTaskTitles;
+        for (int i = 0; i < titles.size(); i++) {
+            CharSequence title = titles.get(i);
+            // NOTE: get() also marks the title as recently used
+            if (!TextUtils.isEmpty(title) && mPrecomputedTitles.get(title) == null) {
+                missingTitles.add(title);
+            }
+        }
+
+        if (missingTitles.isEmpty()) {
+            mSpareTask = task;
+            return false;
+        }
+
+        task.mTaskGeneration = ++mGeneration;
+        task.mTaskParams = mParams;
+        task.mOnComplete = onComplete;
+        mRunning = true;
+
+        mExecutor.execute(task);
+
+        return true;
+    }
+
+    public void cancel() {
+        if (mRunning) {
+            mRunning = false;
+            mGeneration++;
+        }
+    }
+
+    private void handleOnTaskFinished(PrecomputeTask task) {
+        final boolean cancelled = !mRunning || (task.mTaskGeneration != mGeneration);
+        final Runnable onComplete = task.mOnComplete;
+
+        if (!cancelled) {
+            mRunning = false;
+            if (task.mTaskParams.equals(mParams)) {
+                final ArrayList<CharSequence> titles = task.mTaskTitles;
+                for (int i = 0; i < titles.size(); i++) {
+                    mPrecomputedTitles.put(titles.get(i), Boolean.TRUE);
+                }
+            }
+        }
+
+        task.mTaskTitles.clear();
+        task.mTaskParams = null;
+        task.mOnComplete = null;
+        mSpareTask = task;
+
+        if (!cancelled) {
+            onComplete.run();
+        }
+    }
+
+    private class PrecomputeTask implements Runnable {
+        final ArrayList<CharSequence> mTaskTitles = new ArrayList<>();
+        PrecomputedTextCompat.Params mTaskParams;
+        int mTaskGeneration;
+        Runnable mOnComplete;
+        private final Runnable mFinishRunnable = new Runnable() {
+            @Override
+            public void run() {
+                handleOnTaskFinished(PrecomputeTask.this);
+            }
+        };
+
+        @Override
+        public void run() {
+            // runs on the executor
+            final ArrayList<CharSequence> titles = mTaskTitles;
+            final PrecomputedTextCompat.Params params = mTaskParams;
+            for (int i = 0; i < titles.size(); i++) {
+                PrecomputedTextCompat.create(titles.get(i), params);
+            }
+
+            mHandler.post(mFinishRunnable);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/**
+ * Holds custom tab views detached from removed tabs so they can be bound to new tabs.
+ *
+ * Views are pooled per view type, and only views whose type has been registered via
+ * {@link #setViewType(View, int)} are accepted; others are owned by someone else.
+ */
+class TabViewPool {
+    public static final int NO_VIEW_TYPE = -1;
+
+    private final SparseArray<ArrayList<View>> mViews = new SparseArray<>();
+    private final WeakHashMap<View, Integer> mViewTypes = new WeakHashMap<>();
+    private int mSize;
+    private int mMaxSize;
+
+    TabViewPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        mMaxSize = maxSize;
+        for (int i = mViews.size() - 1; i >= 0 && mSize > maxSize; i--) {
+            ArrayList<View> views = mViews.valueAt(i);
+            while (!views.isEmpty() && mSize > maxSize) {
+                views.remove(views.size() - 1);
+                mSize--;
+            }
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int size(int viewType) {
+        ArrayList<View> views = mViews.get(viewType);
+        return (views != null) ? views.size() : 0;
+    }
+
+    /**
+     * Registers the type of a view created for a tab, so it can be pooled once detached.
+     *
+     * @param view     Custom tab view
+     * @param viewType View type, or {@link #NO_VIEW_TYPE} not to pool the view
+     */
+    public void setViewType(View view, int viewType) {
+        if (viewType == NO_VIEW_TYPE) {
+            mViewTypes.remove(view);
+        } else {
+            mViewTypes.put(view, viewType);
+        }
+    }
+
+    /**
+     * Gets the registered type of a view.
+     *
+     * @param view Custom tab view
+     * @return View type, or {@link #NO_VIEW_TYPE} if the view is not registered
+     */
+    public int getViewType(View view) {
+        Integer viewType = mViewTypes.get(view);
+        return (viewType != null) ? viewType : NO_VIEW_TYPE;
+    }
+
+    public View obtain(int viewType) {
+        ArrayList<View> views = mViews.get(viewType);
+        if (views == null || views.isEmpty()) {
+            return null;
+        }
+        mSize--;
+        return views.remove(views.size() - 1);
+    }
+
+    public boolean release(View view) {
+        if (view == null || mSize >= mMaxSize) {
+            return false;
+        }
+
+        Integer viewType = mViewTypes.get(view);
+        if (viewType == null) {
+            return false;
+        }
+
+        ArrayList<View> views = mViews.get(viewType);
+        if (views == null) {
+            views = new ArrayList<>();
+            mViews.put(viewType, views);
+        }
+        views.add(view);
+        mSize++;
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mViews.size(); i++) {
+            mViews.valueAt(i).clear();
+        }
+        mSize = 0;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.content.pm.ActivityInfo;
+import android.content.res.Configuration;
+import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
+import android.view.View;
+
+import com.google.android.material.tabs.TabLayout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Caches measured widths of tab views.
+ *
+ * An entry is reused while the tab has the same text, icon and custom view, and has not been
+ * invalidated since it was measured. All entries are marked as dirty when the parts of the
+ * configuration which affect text metrics (font scale, density, locale and layout direction)
+ * or the measure conditions change. Other configuration changes, such as rotation, keep the
+ * content generation, so tab mode decisions memoized per width are still valid.
+ *
+ * The sum and the maximum of the cached widths are maintained incrementally, so once every tab
+ * is tracked, only the dirty tabs have to be measured to decide the tab mode.
+ */
+class TabWidthCache {
+    public static final int NO_WIDTH = -1;
+
+    private static final int TEXT_METRICS_CONFIG_CHANGES = ActivityInfo.CONFIG_FONT_SCALE
+            | ActivityInfo.CONFIG_DENSITY | ActivityInfo.CONFIG_LOCALE | ActivityInfo.CONFIG_LAYOUT_DIRECTION;
+
+    private final HashMap<TabLayout.Tab, Entry> mEntries = new HashMap<>();
+    private final ArrayList<Entry> mDirtyEntries = new ArrayList<>();
+    private final TabWidthStats mStats = new TabWidthStats();
+    private final Configuration mConfiguration = new Configuration();
+    private boolean mHasConfiguration;
+    private int mMaxWidth;
+    private int mHeightMeasureSpec;
+    private int mGeneration;
+    private int mContentGeneration;
+
+    /**
+     * Marks all entries as dirty if the conditions have been changed since the last call.
+     *
+     * @param configuration     Current configuration
+     * @param maxWidth          Available width of the tab layout
+     * @param heightMeasureSpec Height measure spec of tab views
+     */
+    public void setMeasureConditions(Configuration configuration, int maxWidth, int heightMeasureSpec) {
+        final boolean metricsChanged = !mHasConfiguration
+                || (mConfiguration.diff(configuration) & TEXT_METRICS_CONFIG_CHANGES) != 0;
+
+        if (metricsChanged || mMaxWidth != maxWidth || mHeightMeasureSpec != heightMeasureSpec) {
+            for (Entry entry : mEntries.values()) {
+                markDirty(entry);
+            }
+            if (metricsChanged || mHeightMeasureSpec != heightMeasureSpec) {
+                // NOTE: width is not a part of the contents, decisions are memoized per width
+                mContentGeneration++;
+            }
+            mConfiguration.setTo(configuration);
+            mHasConfiguration = true;
+            mMaxWidth = maxWidth;
+            mHeightMeasureSpec = heightMeasureSpec;
+        }
+    }
+
+    /**
+     * Gets the cached width of the tab.
+     *
+     * @param tab Tab
+     * @return Cached width, or {@link #NO_WIDTH} if the tab has to be measured.
+     */
+    public int get(TabLayout.Tab tab) {
+        Entry entry = mEntries.get(tab);
+        return (entry != null && !entry.dirty && entry.matches(tab)) ? entry.width : NO_WIDTH;
+    }
+
+    public void put(TabLayout.Tab tab, int width) {
+        Entry entry = mEntries.get(tab);
+        if (entry == null) {
+            entry = new Entry(tab);
+            mEntries.put(tab, entry);
+        }
+        if (entry.handle != TabWidthStats.NO_HANDLE) {
+            mStats.remove(entry.handle);
+        }
+        entry.set(width, mStats.add(width), mGeneration);
+    }
+
+    /**
+     * Marks the cached width of the tab as stale.
+     * This is needed when the tab has been added, or contents of its custom view have been changed.
+     *
+     * @param tab Tab
+     */
+    public void invalidate(TabLayout.Tab tab) {
+        Entry entry = mEntries.get(tab);
+        if (entry == null) {
+            entry = new Entry(tab);
+            mEntries.put(tab, entry);
+        }
+        markDirty(entry);
+        mContentGeneration++;
+    }
+
+    /**
+     * Forgets the tab removed from the tab layout.
+     *
+     * @param tab Tab
+     */
+    public void remove(TabLayout.Tab tab) {
+        Entry entry = mEntries.remove(tab);
+        if (entry == null) {
+            return;
+        }
+        mContentGeneration++;
+        if (entry.handle != TabWidthStats.NO_HANDLE) {
+            mStats.remove(entry.handle);
+            entry.handle = TabWidthStats.NO_HANDLE;
+        }
+        // NOTE: removed entries are skipped when iterating dirty entries
+        entry.removed = true;
+    }
+
+    /**
+     * Forgets all tabs.
+     */
+    public void clear() {
+        mEntries.clear();
+        mDirtyEntries.clear();
+        mStats.clear();
+        mContentGeneration++;
+    }
+
+    /**
+     * Forgets all tabs and measure conditions.
+     */
+    public void invalidateAll() {
+        clear();
+        mHasConfiguration = false;
+    }
+
+    /**
+     * Gets whether the tracked tabs can be trusted without walking the tab strip.
+     *
+     * @param tabCount Current number of tabs
+     * @return True if every tab is tracked by this cache
+     */
+    public boolean isTracking(int tabCount) {
+        return mHasConfiguration && (mEntries.size() == tabCount);
+    }
+
+    public int getDirtyCount() {
+        return mDirtyEntries.size();
+    }
+
+    /**
+     * Gets the dirty tab.
+     *
+     * @param index Index of the dirty entry
+     * @return Tab, or null if it has been removed.
+     */
+    public TabLayout.Tab getDirtyTab(int index) {
+        Entry entry = mDirtyEntries.get(index);
+        return (entry.removed || !entry.dirty) ? null : entry.tab;
+    }
+
+    public void clearDirtyTabs() {
+        mDirtyEntries.clear();
+    }
+
+    /**
+     * Gets the generation of tab contents. It is changed whenever tabs are added, removed or invalidated,
+     * or the measure conditions other than the width are changed.
+     *
+     * @return Generation
+     */
+    public int getContentGeneration() {
+        return mContentGeneration;
+    }
+
+    public long getWidthSum() {
+        return mStats.getSum();
+    }
+
+    public int getMaxWidth() {
+        return mStats.getMax();
+    }
+
+    /**
+     * Starts a full walk over the tab strip. Entries which are not put during the walk are
+     * dropped by {@link #endFullWalk()}.
+     */
+    public void beginFullWalk() {
+        mGeneration++;
+        mDirtyEntries.clear();
+    }
+
+    public void endFullWalk() {
+        Iterator<Entry> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.generation != mGeneration) {
+                if (entry.handle != TabWidthStats.NO_HANDLE) {
+                    mStats.remove(entry.handle);
+                    entry.handle = TabWidthStats.NO_HANDLE;
+                }
+                entry.removed = true;
+                it.remove();
+                mContentGeneration++;
+            }
+        }
+    }
+
+    private void markDirty(Entry entry) {
+        if (entry.handle != TabWidthStats.NO_HANDLE) {
+            mStats.remove(entry.handle);
+            entry.handle = TabWidthStats.NO_HANDLE;
+        }
+        entry.width = NO_WIDTH;
+        if (!entry.dirty) {
+            entry.dirty = true;
+            mDirtyEntries.add(entry);
+        }
+    }
+
+    private static class Entry {
+        final TabLayout.Tab tab;
+        CharSequence text;
+        Drawable icon;
+        View customView;
+        int width = NO_WIDTH;
+        int handle = TabWidthStats.NO_HANDLE;
+        int generation;
+        boolean dirty;
+        boolean removed;
+
+        Entry(TabLayout.Tab tab) {
+            this.tab = tab;
+        }
+
+        void set(int width, int handle, int generation) {
+            this.text = tab.getText();
+            this.icon = tab.getIcon();
+            this.customView = tab.getCustomView();
+            this.width = width;
+            this.handle = handle;
+            this.generation = generation;
+            this.dirty = false;
+        }
+
+        boolean matches(TabLayout.Tab tab) {
+            return (customView == tab.getCustomView())
+                    && (icon == tab.getIcon())
+                    && TextUtils.equals(text, tab.getText());
+        }
+    }
+}
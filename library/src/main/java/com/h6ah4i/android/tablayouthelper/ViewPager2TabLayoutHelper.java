@@ -0,0 +1,729 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
+
+import com.google.android.material.tabs.TabLayout;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link TabLayoutHelper} counterpart for {@link ViewPager2}.
+ *
+ * Fine-grained change notifications of the {@link RecyclerView.Adapter} are applied to the affected
+ * tabs only. Inserted tabs are created, removed tabs are removed, moved tabs are moved along with
+ * their contents, and changed tabs are re-configured in place. Only {@link RecyclerView.Adapter#notifyDataSetChanged()}
+ * rebuilds all tabs.
+ *
+ * NOTE: ViewPager2 does not notify adapter replacements, so a new helper has to be created
+ * after calling {@link ViewPager2#setAdapter(RecyclerView.Adapter)}.
+ */
+public class ViewPager2TabLayoutHelper {
+    /**
+     * Value for {@link #setSmoothScrollDistanceThreshold(int)}; always smooth scroll to the selected page.
+     */
+    public static final int NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD = SmoothScrollPolicy.NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD;
+
+    protected TabLayout mTabLayout;
+    protected ViewPager2 mViewPager;
+    protected RecyclerView.Adapter<?> mAdapter;
+    protected TabConfigurationStrategy mTabConfigurationStrategy;
+
+    protected TabLayout.OnTabSelectedListener mInternalOnTabSelectedListener;
+    protected ViewPager2.OnPageChangeCallback mInternalOnPageChangeCallback;
+    protected RecyclerView.AdapterDataObserver mInternalAdapterDataObserver;
+    protected Runnable mAdjustTabModeRunnable;
+    protected Runnable mPopulateTabsRunnable;
+    protected Runnable mUpdateScrollPositionRunnable;
+    protected boolean mAdjustTabModePending;
+    protected boolean mPopulateTabsPending;
+    protected boolean mUpdateScrollPositionPending;
+    protected boolean mAutoAdjustTabMode = false;
+    protected boolean mDuringUpdateTabs;
+    protected boolean mDeferUpdatesWhileHidden = false;
+
+    private TabLayoutHelper.FixedTabLayoutOnPageChangeListener mInternalTabLayoutOnPageChangeListener;
+    private TabPressDetector mTabPressDetector;
+    private DeferredUpdateTrigger mDeferredUpdateTrigger;
+    private final TabModeResolver mTabModeResolver = new TabModeResolver();
+    private final SmoothScrollPolicy mSmoothScrollPolicy = new SmoothScrollPolicy();
+    private final TabWidthCache mTabWidthCache = mTabModeResolver.getTabWidthCache();
+    private int mPendingAdjustTabModeScrollX;
+
+    /**
+     * Constructor.
+     *
+     * @param tabLayout                TabLayout instance
+     * @param viewPager                ViewPager2 instance
+     * @param tabConfigurationStrategy Strategy which sets text and other contents of tabs
+     */
+    public ViewPager2TabLayoutHelper(@NonNull TabLayout tabLayout, @NonNull ViewPager2 viewPager,
+                                     @NonNull TabConfigurationStrategy tabConfigurationStrategy) {
+        RecyclerView.Adapter<?> adapter = viewPager.getAdapter();
+
+        if (adapter == null) {
+            throw new IllegalArgumentException("ViewPager2 does not have an adapter set");
+        }
+
+        mTabLayout = tabLayout;
+        mViewPager = viewPager;
+        mAdapter = adapter;
+        mTabConfigurationStrategy = tabConfigurationStrategy;
+
+        mInternalAdapterDataObserver = new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                handleOnDataSetChanged();
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                handleOnItemRangeChanged(positionStart, itemCount, null);
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+                handleOnItemRangeChanged(positionStart, itemCount, payload);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                handleOnItemRangeInserted(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                handleOnItemRangeRemoved(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                handleOnItemRangeMoved(fromPosition, toPosition, itemCount);
+            }
+        };
+
+        mInternalOnTabSelectedListener = new TabLayout.OnTabSelectedListener() {
+            @Override
+            public void onTabSelected(TabLayout.Tab tab) {
+                handleOnTabSelected(tab);
+            }
+
+            @Override
+            public void onTabUnselected(TabLayout.Tab tab) {
+            }
+
+            @Override
+            public void onTabReselected(TabLayout.Tab tab) {
+            }
+        };
+
+        // NOTE: scroll state constants of ViewPager2 have the same values as ViewPager's
+        mInternalTabLayoutOnPageChangeListener = new TabLayoutHelper.FixedTabLayoutOnPageChangeListener(mTabLayout);
+
+        mInternalOnPageChangeCallback = new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+                mInternalTabLayoutOnPageChangeListener.onPageScrolled(position, positionOffset, positionOffsetPixels);
+            }
+
+            @Override
+            public void onPageSelected(int position) {
+                mInternalTabLayoutOnPageChangeListener.onPageSelected(position);
+            }
+
+            @Override
+            public void onPageScrollStateChanged(int state) {
+                mInternalTabLayoutOnPageChangeListener.onPageScrollStateChanged(state);
+            }
+        };
+
+        // NOTE: deferred operations reuse these instances, so repeated updates do not allocate
+        mPopulateTabsRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mPopulateTabsPending = false;
+                populateTabs();
+            }
+        };
+
+        mAdjustTabModeRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mAdjustTabModePending = false;
+                adjustTabModeInternal(mTabLayout, mPendingAdjustTabModeScrollX);
+            }
+        };
+
+        mUpdateScrollPositionRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mUpdateScrollPositionPending = false;
+                updateScrollPosition();
+            }
+        };
+
+        populateTabs();
+
+        mAdapter.registerAdapterDataObserver(mInternalAdapterDataObserver);
+        mViewPager.registerOnPageChangeCallback(mInternalOnPageChangeCallback);
+        mTabLayout.addOnTabSelectedListener(mInternalOnTabSelectedListener);
+    }
+
+    //
+    // public methods
+    //
+
+    /**
+     * Retrieve underlying TabLayout instance.
+     *
+     * @return TabLayout instance
+     */
+    public TabLayout getTabLayout() {
+        return mTabLayout;
+    }
+
+    /**
+     * Retrieve ViewPager2 instance.
+     *
+     * @return ViewPager2 instance
+     */
+    public ViewPager2 getViewPager() {
+        return mViewPager;
+    }
+
+    /**
+     * Sets auto tab mode adjustment enabled
+     * The tab mode is also re-evaluated when the width of the TabLayout changes (e.g. rotations).
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setAutoAdjustTabModeEnabled(boolean enabled) {
+        if (mAutoAdjustTabMode == enabled) {
+            return;
+        }
+        mAutoAdjustTabMode = enabled;
+
+        setLayoutChangeListenerEnabled(enabled);
+
+        if (mAutoAdjustTabMode) {
+            adjustTabMode(-1);
+        } else {
+            cancelPendingAdjustTabMode();
+        }
+    }
+
+    /**
+     * Gets whether auto tab mode adjustment is enabled.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isAutoAdjustTabModeEnabled() {
+        return mAutoAdjustTabMode;
+    }
+
+    /**
+     * Sets the maximum distance (number of pages) scrolled smoothly when a tab is selected.
+     *
+     * Selecting a farther tab jumps to the page without smooth scrolling, so the ViewPager2 does not
+     * create and lay out every page in between; only the destination page and its neighbours are created.
+     *
+     * @param distance Number of pages, or {@link #NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD} to always scroll smoothly.
+     */
+    public void setSmoothScrollDistanceThreshold(int distance) {
+        mSmoothScrollPolicy.setDistanceThreshold(distance);
+    }
+
+    /**
+     * Gets the maximum distance (number of pages) scrolled smoothly when a tab is selected.
+     *
+     * @return Number of pages, or {@link #NO_SMOOTH_SCROLL_DISTANCE_THRESHOLD}.
+     */
+    public int getSmoothScrollDistanceThreshold() {
+        return mSmoothScrollPolicy.getDistanceThreshold();
+    }
+
+    /**
+     * Sets the listener which is notified when a tab is pressed, before the tab is actually selected.
+     *
+     * This can be used to start preparing the page (e.g. loading its data) while the finger is still down.
+     * Tab views are watched for touch-downs only while a listener is set.
+     *
+     * @param listener OnTabPressListener, or null to stop watching touch-downs.
+     */
+    public void setOnTabPressListener(@Nullable TabLayoutHelper.OnTabPressListener listener) {
+        if (mTabPressDetector != null) {
+            mTabPressDetector.detach();
+            mTabPressDetector = null;
+        }
+        if (listener != null) {
+            mTabPressDetector = new TabPressDetector(mTabLayout, listener);
+            mTabPressDetector.attach();
+        }
+    }
+
+    /**
+     * Sets the extra space required to switch to {@link TabLayout#MODE_FIXED} by auto tab mode adjustment.
+     *
+     * Tabs switch to {@link TabLayout#MODE_FIXED} only when they fit with this extra space, and stay in the mode
+     * until they do not fit at all.
+     *
+     * @param hysteresis Extra space in pixels. 0 disables hysteresis.
+     */
+    public void setTabModeHysteresis(int hysteresis) {
+        mTabModeResolver.setHysteresis(hysteresis);
+    }
+
+    /**
+     * Gets the extra space required to switch to {@link TabLayout#MODE_FIXED} by auto tab mode adjustment.
+     *
+     * @return Extra space in pixels
+     */
+    public int getTabModeHysteresis() {
+        return mTabModeResolver.getHysteresis();
+    }
+
+    /**
+     * Sets whether tab indicator updates during page scrolls are applied once per animation frame.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setIndicatorUpdateThrottlingEnabled(boolean enabled) {
+        mInternalTabLayoutOnPageChangeListener.setThrottlingEnabled(enabled);
+    }
+
+    /**
+     * Gets whether tab indicator updates during page scrolls are applied once per animation frame.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isIndicatorUpdateThrottlingEnabled() {
+        return mInternalTabLayoutOnPageChangeListener.isThrottlingEnabled();
+    }
+
+    /**
+     * Sets whether adapter changes are deferred while the TabLayout is not shown.
+     *
+     * When enabled, adapter changes notified while the TabLayout is detached from a window or
+     * invisible (including its ancestors, e.g. a hidden fragment) only mark tabs as stale, and all tabs
+     * are re-created once right before the TabLayout is drawn again.
+     *
+     * @param enabled True for enabled, otherwise false.
+     */
+    public void setDeferUpdatesWhileHiddenEnabled(boolean enabled) {
+        if (mDeferUpdatesWhileHidden == enabled) {
+            return;
+        }
+        mDeferUpdatesWhileHidden = enabled;
+
+        if (!enabled && mDeferredUpdateTrigger != null && mDeferredUpdateTrigger.isArmed()) {
+            mDeferredUpdateTrigger.disarm();
+            schedulePopulateTabs();
+        }
+    }
+
+    /**
+     * Gets whether adapter changes are deferred while the TabLayout is not shown.
+     *
+     * @return True for enabled, otherwise false.
+     */
+    public boolean isDeferUpdatesWhileHiddenEnabled() {
+        return mDeferUpdatesWhileHidden;
+    }
+
+    /**
+     * Unregister internal listener objects, release object references, etc.
+     * This method should be called in order to avoid memory leaks.
+     */
+    public void release() {
+        setOnTabPressListener(null);
+        setLayoutChangeListenerEnabled(false);
+        cancelPendingAdjustTabMode();
+        cancelPendingPopulateTabs();
+        cancelPendingUpdateScrollPosition();
+
+        if (mInternalAdapterDataObserver != null) {
+            mAdapter.unregisterAdapterDataObserver(mInternalAdapterDataObserver);
+            mInternalAdapterDataObserver = null;
+        }
+        if (mInternalOnTabSelectedListener != null) {
+            mTabLayout.removeOnTabSelectedListener(mInternalOnTabSelectedListener);
+            mInternalOnTabSelectedListener = null;
+        }
+        if (mInternalOnPageChangeCallback != null) {
+            mInternalTabLayoutOnPageChangeListener.cancelPendingScrollPosition();
+            mViewPager.unregisterOnPageChangeCallback(mInternalOnPageChangeCallback);
+            mInternalOnPageChangeCallback = null;
+            mInternalTabLayoutOnPageChangeListener = null;
+        }
+        mTabWidthCache.invalidateAll();
+        mTabConfigurationStrategy = null;
+        mAdapter = null;
+        mViewPager = null;
+        mTabLayout = null;
+    }
+
+    /**
+     * Updates all tabs via {@link #onUpdateTab(TabLayout.Tab, int, List)}.
+     * This method should also be called after modifying tabs directly, since measured tab widths are cached.
+     */
+    public void updateAllTabs() {
+        updateTabs(0, mTabLayout.getTabCount(), Collections.<Object>emptyList());
+    }
+
+    /**
+     * Override this method if you want to use custom tab layout.
+     * The default implementation configures a new tab via {@link TabConfigurationStrategy}.
+     *
+     * @param tabLayout TabLayout
+     * @param position  Position of the item
+     * @return TabLayout.Tab
+     */
+    protected TabLayout.Tab onCreateTab(TabLayout tabLayout, int position) {
+        TabLayout.Tab tab = tabLayout.newTab();
+        mTabConfigurationStrategy.onConfigureTab(tab, position);
+        return tab;
+    }
+
+    /**
+     * Override this method if you want to update only the parts of the tab specified by payloads.
+     * The default implementation re-configures the tab via {@link TabConfigurationStrategy}.
+     *
+     * @param tab      Tab
+     * @param position Position of the item
+     * @param payloads Payloads passed to {@link RecyclerView.Adapter#notifyItemRangeChanged(int, int, Object)}.
+     *                 Empty for full update.
+     */
+    protected void onUpdateTab(TabLayout.Tab tab, int position, @NonNull List<Object> payloads) {
+        mTabConfigurationStrategy.onConfigureTab(tab, position);
+    }
+
+    //
+    // internal methods
+    //
+    protected void handleOnDataSetChanged() {
+        cancelPendingUpdateScrollPosition();
+        schedulePopulateTabs();
+    }
+
+    protected void handleOnItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+        if (deferTabsUpdate()) {
+            return;
+        }
+        if (!isValidRange(positionStart, itemCount, mTabLayout.getTabCount())) {
+            schedulePopulateTabs();
+            return;
+        }
+
+        final List<Object> payloads = (payload != null)
+                ? Collections.singletonList(payload) : Collections.<Object>emptyList();
+
+        updateTabs(positionStart, itemCount, payloads);
+        onTabsChanged();
+    }
+
+    protected void handleOnItemRangeInserted(int positionStart, int itemCount) {
+        if (deferTabsUpdate()) {
+            return;
+        }
+        if (!isValidRange(positionStart, 0, mTabLayout.getTabCount())) {
+            schedulePopulateTabs();
+            return;
+        }
+
+        final TabLayout tabLayout = mTabLayout;
+        mDuringUpdateTabs = true;
+        try {
+            for (int i = 0; i < itemCount; i++) {
+                TabLayout.Tab tab = onCreateTab(tabLayout, positionStart + i);
+                tabLayout.addTab(tab, positionStart + i, false);
+                mTabWidthCache.invalidate(tab);
+            }
+        } finally {
+            mDuringUpdateTabs = false;
+        }
+        onTabsChanged();
+    }
+
+    protected void handleOnItemRangeRemoved(int positionStart, int itemCount) {
+        if (deferTabsUpdate()) {
+            return;
+        }
+        if (!isValidRange(positionStart, itemCount, mTabLayout.getTabCount())) {
+            schedulePopulateTabs();
+            return;
+        }
+
+        final TabLayout tabLayout = mTabLayout;
+        mDuringUpdateTabs = true;
+        try {
+            for (int i = positionStart + itemCount - 1; i >= positionStart; i--) {
+                TabLayout.Tab tab = tabLayout.getTabAt(i);
+                mTabWidthCache.remove(tab);
+                tabLayout.removeTab(tab);
+            }
+        } finally {
+            mDuringUpdateTabs = false;
+        }
+        onTabsChanged();
+    }
+
+    protected void handleOnItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        if (deferTabsUpdate()) {
+            return;
+        }
+
+        final TabLayout tabLayout = mTabLayout;
+        final int tabCount = tabLayout.getTabCount();
+
+        // NOTE: RecyclerView supports moving a single item only
+        if (itemCount != 1 || !isValidRange(fromPosition, 1, tabCount) || !isValidRange(toPosition, 1, tabCount)) {
+            schedulePopulateTabs();
+            return;
+        }
+
+        mDuringUpdateTabs = true;
+        try {
+            // removed tabs are reset by TabLayout, so contents are carried over to a new tab
+            TabLayout.Tab tab = tabLayout.getTabAt(fromPosition);
+            boolean selected = tab.isSelected();
+            TabLayoutHelper.DetachedTabContents contents = new TabLayoutHelper.DetachedTabContents(tab);
+
+            mTabWidthCache.remove(tab);
+            tabLayout.removeTab(tab);
+
+            TabLayout.Tab movedTab = contents.restore(tabLayout);
+            tabLayout.addTab(movedTab, toPosition, false);
+            mTabWidthCache.invalidate(movedTab);
+
+            if (selected) {
+                movedTab.select();
+            }
+        } finally {
+            mDuringUpdateTabs = false;
+        }
+        onTabsChanged();
+    }
+
+    protected void handleOnTabSelected(TabLayout.Tab tab) {
+        if (mDuringUpdateTabs) {
+            return;
+        }
+        final int position = tab.getPosition();
+        mViewPager.setCurrentItem(position, mSmoothScrollPolicy.shouldSmoothScroll(mViewPager.getCurrentItem(), position));
+        cancelPendingUpdateScrollPosition();
+    }
+
+    protected void schedulePopulateTabs() {
+        if (isPopulateTabsPending()) {
+            return;
+        }
+
+        if (mDeferUpdatesWhileHidden && !mTabLayout.isShown()) {
+            // tabs are re-created once when the tab layout is shown again
+            if (mDeferredUpdateTrigger == null) {
+                mDeferredUpdateTrigger = new DeferredUpdateTrigger(mTabLayout, new Runnable() {
+                    @Override
+                    public void run() {
+                        populateTabs();
+                    }
+                });
+            }
+            mDeferredUpdateTrigger.arm();
+            return;
+        }
+
+        mPopulateTabsPending = true;
+
+        // NOTE: runs at the next animation frame (Choreographer), so all changes made within a frame are applied at once
+        ViewCompat.postOnAnimation(mTabLayout, mPopulateTabsRunnable);
+    }
+
+    protected void cancelPendingPopulateTabs() {
+        if (mPopulateTabsPending) {
+            mTabLayout.removeCallbacks(mPopulateTabsRunnable);
+            mPopulateTabsPending = false;
+        }
+        if (mDeferredUpdateTrigger != null) {
+            mDeferredUpdateTrigger.disarm();
+        }
+    }
+
+    protected void cancelPendingAdjustTabMode() {
+        if (mAdjustTabModePending) {
+            mTabLayout.removeCallbacks(mAdjustTabModeRunnable);
+            mAdjustTabModePending = false;
+        }
+    }
+
+    protected void cancelPendingUpdateScrollPosition() {
+        if (mUpdateScrollPositionPending) {
+            mTabLayout.removeCallbacks(mUpdateScrollPositionRunnable);
+            mUpdateScrollPositionPending = false;
+        }
+    }
+
+    protected void populateTabs() {
+        final TabLayout tabLayout = mTabLayout;
+        final int prevScrollX = tabLayout.getScrollX();
+
+        mDuringUpdateTabs = true;
+        try {
+            // remove all tabs
+            mTabWidthCache.clear();
+            tabLayout.removeAllTabs();
+
+            // add tabs
+            int count = mAdapter.getItemCount();
+            for (int i = 0; i < count; i++) {
+                TabLayout.Tab tab = onCreateTab(tabLayout, i);
+                tabLayout.addTab(tab, false);
+                mTabWidthCache.invalidate(tab);
+            }
+
+            selectCurrentTab();
+        } finally {
+            mDuringUpdateTabs = false;
+        }
+
+        // adjust tab mode & gravity
+        if (mAutoAdjustTabMode) {
+            adjustTabMode(prevScrollX);
+        } else if (tabLayout.getTabMode() == TabLayout.MODE_SCROLLABLE) {
+            // restore scroll position
+            tabLayout.scrollTo(prevScrollX, 0);
+        }
+    }
+
+    protected void adjustTabMode(int prevScrollX) {
+        if (mAdjustTabModePending) {
+            // coalesced into the pending adjustment
+            return;
+        }
+
+        mPendingAdjustTabModeScrollX = (prevScrollX < 0) ? mTabLayout.getScrollX() : prevScrollX;
+
+        mAdjustTabModePending = true;
+
+        // NOTE: fine-grained notifications tend to come in a row, so the tab mode is determined once per frame
+        ViewCompat.postOnAnimation(mTabLayout, mAdjustTabModeRunnable);
+    }
+
+    protected int determineTabMode(@NonNull TabLayout tabLayout) {
+        return mTabModeResolver.determineTabMode(tabLayout);
+    }
+
+    protected void adjustTabModeInternal(@NonNull TabLayout tabLayout, int prevScrollX) {
+        int prevTabMode = tabLayout.getTabMode();
+
+        mTabModeResolver.prepareToDetermineTabMode(tabLayout);
+
+        int newTabMode = determineTabMode(tabLayout);
+
+        cancelPendingUpdateScrollPosition();
+
+        if (TabModeResolver.applyTabMode(tabLayout, prevTabMode, newTabMode, prevScrollX)) {
+            // scroll to current selected tab
+            mUpdateScrollPositionPending = true;
+            mTabLayout.post(mUpdateScrollPositionRunnable);
+        }
+    }
+
+    private void setLayoutChangeListenerEnabled(boolean enabled) {
+        mTabModeResolver.setOnWidthChangedListener(mTabLayout, (!enabled) ? null : new Runnable() {
+            @Override
+            public void run() {
+                // rotations, multi-window resizes, etc.
+                adjustTabMode(-1);
+            }
+        });
+    }
+
+    private boolean isPopulateTabsPending() {
+        return mPopulateTabsPending
+                || (mDeferredUpdateTrigger != null && mDeferredUpdateTrigger.isArmed());
+    }
+
+    private boolean deferTabsUpdate() {
+        if (isPopulateTabsPending()) {
+            // all tabs will be re-created
+            return true;
+        }
+        if (mDeferUpdatesWhileHidden && !mTabLayout.isShown()) {
+            schedulePopulateTabs();
+            return true;
+        }
+        return false;
+    }
+
+    private void updateTabs(int positionStart, int itemCount, List<Object> payloads) {
+        final TabLayout tabLayout = mTabLayout;
+        for (int i = positionStart; i < positionStart + itemCount; i++) {
+            TabLayout.Tab tab = tabLayout.getTabAt(i);
+            onUpdateTab(tab, i, payloads);
+            mTabWidthCache.invalidate(tab);
+        }
+    }
+
+    private void onTabsChanged() {
+        mDuringUpdateTabs = true;
+        try {
+            selectCurrentTab();
+        } finally {
+            mDuringUpdateTabs = false;
+        }
+
+        if (mAutoAdjustTabMode) {
+            adjustTabMode(-1);
+        }
+    }
+
+    private void selectCurrentTab() {
+        // NOTE: ViewPager2 may update its current item after this helper, onPageSelected() follows in that case
+        int currentItem = Math.min(mViewPager.getCurrentItem(), mTabLayout.getTabCount() - 1);
+        if (currentItem >= 0 && mTabLayout.getSelectedTabPosition() != currentItem) {
+            mTabLayout.getTabAt(currentItem).select();
+        }
+    }
+
+    private void updateScrollPosition() {
+        mTabLayout.setScrollPosition(mTabLayout.getSelectedTabPosition(), 0, false);
+    }
+
+    private static boolean isValidRange(int positionStart, int itemCount, int count) {
+        return (positionStart >= 0) && (itemCount >= 0) && (positionStart + itemCount <= count);
+    }
+
+    /**
+     * Configures tabs created for the items of the adapter.
+     */
+    public interface TabConfigurationStrategy {
+        /**
+         * Called to configure the tab for the item at the specified position.
+         * This method is also called for existing tabs when their items have been changed.
+         *
+         * @param tab      Tab
+         * @param position Position of the item
+         */
+        void onConfigureTab(@NonNull TabLayout.Tab tab, int position);
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+
+import androidx.core.view.ViewCompat;
+import androidx.viewpager.widget.ViewPager;
+
+import com.google.android.material.tabs.TabLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that page scroll frames and repeated tab updates do not allocate objects in steady state.
+ * Data set changes are covered when they do not insert, remove or move tabs; TabLayout itself
+ * allocates when tabs are added.
+ *
+ * Allocations are counted per thread with {@link com.sun.management.ThreadMXBean}, so the tests are
+ * skipped on JVMs which do not support it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TabLayoutHelperAllocationTest {
+    private static final int TAB_COUNT = 20;
+    // NOTE: more than 128 tabs, so tab IDs are out of the range of Long.valueOf() cache
+    private static final int RECONCILED_TAB_COUNT = 200;
+    private static final int WARM_UP_FRAMES = 200;
+    private static final int FRAMES = 1000;
+
+    private Context mContext;
+    private TabLayout mTabLayout;
+
+    @Before
+    public void setUp() {
+        assumeTrue(AllocationCounter.isSupported());
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mContext = new ContextThemeWrapper(activity, R.style.Theme_AppCompat_Light);
+
+        mTabLayout = new TabLayout(mContext);
+        for (int i = 0; i < TAB_COUNT; i++) {
+            mTabLayout.addTab(mTabLayout.newTab().setText("Tab " + i));
+        }
+        activity.setContentView(mTabLayout);
+        idle();
+    }
+
+    @Test
+    public void scrollFramesWhileDragging() {
+        final TabLayoutHelper.FixedTabLayoutOnPageChangeListener listener =
+                new TabLayoutHelper.FixedTabLayoutOnPageChangeListener(mTabLayout);
+        listener.onPageScrollStateChanged(ViewPager.SCROLL_STATE_DRAGGING);
+
+        assertNoAllocationsPerFrame("scroll frames", new Frame() {
+            @Override
+            public void run(int frame) {
+                int position = (frame / 10) % (TAB_COUNT - 1);
+                float positionOffset = (frame % 10) / 10.0f;
+                listener.onPageScrolled(position, positionOffset, (int) (positionOffset * 1000));
+            }
+        });
+    }
+
+    @Test
+    public void scrollFramesWhileDraggingSkipSubPixelUpdates() {
+        final TabLayoutHelper.FixedTabLayoutOnPageChangeListener listener =
+                new TabLayoutHelper.FixedTabLayoutOnPageChangeListener(mTabLayout);
+        listener.setSkipSubPixelUpdatesEnabled(true);
+        listener.onPageScrollStateChanged(ViewPager.SCROLL_STATE_DRAGGING);
+
+        assertNoAllocationsPerFrame("scroll frames (skip sub-pixel updates)", new Frame() {
+            @Override
+            public void run(int frame) {
+                int position = (frame / 10) % (TAB_COUNT - 1);
+                float positionOffset = (frame % 10) / 10.0f;
+                listener.onPageScrolled(position, positionOffset, (int) (positionOffset * 1000));
+            }
+        });
+    }
+
+    @Test
+    public void throttledScrollEventsWithinFrame() {
+        final TabLayoutHelper.FixedTabLayoutOnPageChangeListener listener =
+                new TabLayoutHelper.FixedTabLayoutOnPageChangeListener(mTabLayout);
+        listener.setThrottlingEnabled(true);
+        listener.onPageScrollStateChanged(ViewPager.SCROLL_STATE_DRAGGING);
+
+        // the first event schedules the update, following ones within the frame replace it
+        listener.onPageScrolled(0, 0.0f, 0);
+        final int pendingRunnables = pendingRunnables();
+
+        assertNoAllocationsPerFrame("throttled scroll events", new Frame() {
+            @Override
+            public void run(int frame) {
+                float positionOffset = (frame % 100) / 100.0f;
+                listener.onPageScrolled(1, positionOffset, (int) (positionOffset * 1000));
+            }
+        });
+        assertEquals("posted runnables", pendingRunnables, pendingRunnables());
+
+        listener.cancelPendingScrollPosition();
+    }
+
+    @Test
+    public void pageSelectedWhileDragging() {
+        final TabLayoutHelper.FixedTabLayoutOnPageChangeListener listener =
+                new TabLayoutHelper.FixedTabLayoutOnPageChangeListener(mTabLayout);
+        listener.onPageScrollStateChanged(ViewPager.SCROLL_STATE_DRAGGING);
+
+        assertNoAllocationsPerFrame("page selections", new Frame() {
+            @Override
+            public void run(int frame) {
+                listener.onPageSelected(1 + (frame % 2));
+            }
+        });
+
+        assertEquals(1 + ((WARM_UP_FRAMES + FRAMES - 1) % 2), mTabLayout.getSelectedTabPosition());
+    }
+
+    @Test
+    public void coalescedDataSetChanges() {
+        ViewPager viewPager = new ViewPager(mContext);
+        viewPager.setAdapter(new TestPagerAdapter(TAB_COUNT));
+        final TabLayoutHelper helper = new TabLayoutHelper(mTabLayout, viewPager);
+        idle();
+
+        // the first change schedules the update, following ones within the frame are coalesced
+        helper.handleOnDataSetChanged();
+        final int pendingRunnables = pendingRunnables();
+
+        assertNoAllocationsPerFrame("coalesced data set changes", new Frame() {
+            @Override
+            public void run(int frame) {
+                helper.handleOnDataSetChanged();
+            }
+        });
+        assertEquals("posted runnables", pendingRunnables, pendingRunnables());
+
+        helper.release();
+    }
+
+    @Test
+    public void deferredRunnablesAreReused() {
+        ViewPager viewPager = new ViewPager(mContext);
+        viewPager.setAdapter(new TestPagerAdapter(TAB_COUNT));
+        TabLayoutHelper helper = new TabLayoutHelper(mTabLayout, viewPager);
+        helper.setAutoAdjustTabModeEnabled(true);
+        idle();
+
+        Runnable setTabsRunnable = helper.mSetTabsFromPagerAdapterRunnable;
+        Runnable adjustTabModeRunnable = helper.mAdjustTabModeRunnable;
+        Runnable updateScrollPositionRunnable = helper.mUpdateScrollPositionRunnable;
+
+        for (int i = 0; i < 3; i++) {
+            helper.handleOnDataSetChanged();
+            helper.cancelPendingSetTabsFromPagerAdapter();
+            helper.handleOnDataSetChanged();
+            idle();
+        }
+
+        assertSame(setTabsRunnable, helper.mSetTabsFromPagerAdapterRunnable);
+        assertSame(adjustTabModeRunnable, helper.mAdjustTabModeRunnable);
+        assertSame(updateScrollPositionRunnable, helper.mUpdateScrollPositionRunnable);
+
+        helper.release();
+    }
+
+    @Test
+    public void reconciledDataSetChanges() {
+        ViewPager viewPager = new ViewPager(mContext);
+        viewPager.setAdapter(new TestPagerAdapter(RECONCILED_TAB_COUNT));
+        final TabLayoutHelper helper = new TabLayoutHelper(mTabLayout, viewPager);
+        helper.setTabReconciliationEnabled(true);
+        idle();
+
+        TabLayout.Tab firstTab = mTabLayout.getTabAt(0);
+        final Runnable emptyRunnable = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        // NOTE: posting the deferred update allocates in Robolectric, so the same post is subtracted
+        assertNoAllocationsPerFrame("reconciled data set changes", new Frame() {
+            @Override
+            public void run(int frame) {
+                helper.handleOnDataSetChanged();
+                idle();
+            }
+        }, new Frame() {
+            @Override
+            public void run(int frame) {
+                ViewCompat.postOnAnimation(mTabLayout, emptyRunnable);
+                idle();
+            }
+        });
+
+        assertEquals(RECONCILED_TAB_COUNT, mTabLayout.getTabCount());
+        assertSame(firstTab, mTabLayout.getTabAt(0));
+
+        helper.release();
+    }
+
+    @Test
+    public void reconcileTabs() {
+        final ArrayList<Object> oldKeys = new ArrayList<>();
+        final ArrayList<Object> newKeys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            oldKeys.add("tab-" + i);
+        }
+        // one tab moved, one removed and one inserted
+        newKeys.addAll(oldKeys);
+        newKeys.add(0, newKeys.remove(250));
+        newKeys.remove(100);
+        newKeys.add("tab-new");
+
+        final TabReconciler reconciler = new TabReconciler();
+
+        assertNoAllocationsPerFrame("reconciliations", new Frame() {
+            @Override
+            public void run(int frame) {
+                reconciler.reconcile(oldKeys, newKeys);
+            }
+        });
+
+        assertEquals(250, reconciler.getOldPosition(0));
+        assertEquals(TabReconciler.NO_POSITION, reconciler.getOldPosition(newKeys.size() - 1));
+    }
+
+    //
+    // utilities
+    //
+
+    private static void idle() {
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private static int pendingRunnables() {
+        // NOTE: includes View.postOnAnimation() callbacks, Choreographer posts them to the main looper
+        return ShadowLooper.getShadowMainLooper().getScheduler().size();
+    }
+
+    private static void assertNoAllocationsPerFrame(String what, Frame frame) {
+        // NOTE: reading the counter may allocate by itself, so the overhead is subtracted
+        assertNoAllocationsPerFrame(what, frame, new Frame() {
+            @Override
+            public void run(int frame) {
+            }
+        });
+    }
+
+    private static void assertNoAllocationsPerFrame(String what, Frame frame, Frame overheadFrame) {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            frame.run(i);
+            overheadFrame.run(i);
+        }
+
+        long overhead = AllocationCounter.measure(overheadFrame, WARM_UP_FRAMES, FRAMES);
+        long allocated = AllocationCounter.measure(frame, WARM_UP_FRAMES, FRAMES) - overhead;
+
+        // any object allocated per frame takes more than FRAMES bytes in total
+        if (allocated >= FRAMES) {
+            fail(what + ": " + allocated + " bytes allocated in " + FRAMES + " frames");
+        }
+    }
+
+    interface Frame {
+        void run(int frame);
+    }
+
+    static class AllocationCounter {
+        static boolean isSupported() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return false;
+            }
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (!sunBean.isThreadAllocatedMemorySupported()) {
+                return false;
+            }
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+            return true;
+        }
+
+        static long measure(Frame frame, int firstFrame, int frameCount) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+
+            long start = bean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < frameCount; i++) {
+                frame.run(firstFrame + i);
+            }
+            return bean.getThreadAllocatedBytes(threadId) - start;
+        }
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+
+import androidx.annotation.NonNull;
+import androidx.viewpager.widget.PagerAdapter;
+import androidx.viewpager.widget.ViewPager;
+
+import com.google.android.material.tabs.TabLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Guards the amount of work done by {@link TabLayoutHelper} against performance regressions.
+ *
+ * Each scenario counts tab creations, rebinds, measured tab views, executed / coalesced tab updates
+ * and layout requests, and fails if any of them exceeds its budget. Counts of work that has to be
+ * done are checked exactly or with lower bounds too, so skipping the work does not pass.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TabLayoutHelperPerformanceTest {
+    private static final int[] TAB_COUNTS = {10, 100, 500};
+    private static final int WIDE_WIDTH = 1080;
+    private static final int NARROW_WIDTH = 480;
+    private static final int SCROLLABLE_TAB_MIN_WIDTH = 72;
+
+    private Activity mActivity;
+    private FrameLayout mContainer;
+    private CountingTabLayout mTabLayout;
+    private ViewPager mViewPager;
+    private TestPagerAdapter mAdapter;
+    private CountingTabLayoutHelper mHelper;
+    private CountingMetricsListener mMetrics;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+    }
+
+    @Test
+    public void initialSetup() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpViews();
+
+            mAdapter = new TestPagerAdapter(tabCount);
+            mViewPager.setAdapter(mAdapter);
+            mHelper = new CountingTabLayoutHelper(mTabLayout, mViewPager);
+            mMetrics = new CountingMetricsListener();
+            mHelper.setMetricsListener(mMetrics);
+            mHelper.setAutoAdjustTabModeEnabled(true);
+            idle();
+
+            assertEquals(tabCount, mTabLayout.getTabCount());
+            assertEquals("created tabs", tabCount, mHelper.createdTabs);
+            assertBudget("measured tabs", tabCount, mMetrics.measuredTabs);
+            assertAtLeast("measured tabs", 1, mMetrics.measuredTabs);
+            assertAtLeast("tab mode adjustments", 1, mMetrics.tabModeAdjustments);
+            assertEquals(expectedTabMode(tabCount, WIDE_WIDTH), mTabLayout.getTabMode());
+
+            tearDownHelper();
+        }
+    }
+
+    @Test
+    public void dataSetChangesInFrameAreCoalesced() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpHelper(tabCount, false, true);
+
+            mAdapter.notifyDataSetChanged();
+            final int pendingRunnables = pendingRunnables();
+            for (int i = 1; i < 10; i++) {
+                mAdapter.notifyDataSetChanged();
+            }
+            assertEquals("posted runnables", pendingRunnables, pendingRunnables());
+            idle();
+
+            assertEquals("executed tab updates", 1, mMetrics.executedUpdates);
+            assertEquals(9, mMetrics.coalescedUpdates);
+            assertEquals("tab updates", 1, mMetrics.tabsUpdates);
+            assertEquals("created tabs", tabCount, mHelper.createdTabs);
+            assertEquals(tabCount, mTabLayout.getTabCount());
+
+            tearDownHelper();
+        }
+    }
+
+    @Test
+    public void batchUpdate() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpHelper(tabCount, false, true);
+
+            mHelper.beginBatchUpdate();
+            for (int i = 0; i < 5; i++) {
+                mAdapter.addPage();
+                mAdapter.notifyDataSetChanged();
+                idle();
+            }
+            mHelper.endBatchUpdate();
+            idle();
+
+            assertEquals(tabCount + 5, mTabLayout.getTabCount());
+            assertEquals("executed tab updates", 1, mMetrics.executedUpdates);
+            assertEquals("tab updates", 1, mMetrics.tabsUpdates);
+            assertEquals("created tabs", tabCount + 5, mHelper.createdTabs);
+            assertEquals("Page " + (tabCount + 4), mTabLayout.getTabAt(tabCount + 4).getText().toString());
+
+            tearDownHelper();
+        }
+    }
+
+    @Test
+    public void reconciledAppend() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpHelper(tabCount, true, true);
+            List<TabLayout.Tab> oldTabs = getTabs();
+
+            mAdapter.addPage();
+            mAdapter.notifyDataSetChanged();
+            idle();
+
+            assertEquals(tabCount + 1, mTabLayout.getTabCount());
+            assertEquals("created tabs", 1, mHelper.createdTabs);
+            assertEquals(oldTabs, getTabs().subList(0, tabCount));
+            assertEquals("Page " + tabCount, mTabLayout.getTabAt(tabCount).getText().toString());
+            // kept tabs are re-bound, but their contents have not been changed
+            assertBudget("rebound tabs", tabCount + 1, mHelper.reboundTabs);
+            assertAtLeast("rebound tabs", 1, mHelper.reboundTabs);
+            // only the new tab is measured
+            assertEquals("measured tabs", 1, mMetrics.measuredTabs);
+            assertEquals("tab updates", 1, mMetrics.tabsUpdates);
+
+            tearDownHelper();
+        }
+    }
+
+    @Test
+    public void reconciledRemoveFirst() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpHelper(tabCount, true, true);
+            List<TabLayout.Tab> oldTabs = getTabs();
+
+            mAdapter.removePage(0);
+            mAdapter.notifyDataSetChanged();
+            idle();
+
+            assertEquals(tabCount - 1, mTabLayout.getTabCount());
+            assertEquals(oldTabs.subList(1, tabCount), getTabs());
+            assertEquals("created tabs", 0, mHelper.createdTabs);
+            // kept tabs are re-bound, but their contents have not been changed
+            assertBudget("rebound tabs", tabCount - 1, mHelper.reboundTabs);
+            assertEquals("measured tabs", 0, mMetrics.measuredTabs);
+            assertEquals("tab updates", 1, mMetrics.tabsUpdates);
+            assertAtLeast("tab mode adjustments", 1, mMetrics.tabModeAdjustments);
+
+            tearDownHelper();
+        }
+    }
+
+    @Test
+    public void notifyTabChangedRebindsOneTab() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpHelper(tabCount, false, true);
+
+            mHelper.notifyTabChanged(tabCount / 2, "payload");
+            idle();
+
+            assertEquals("rebound tabs", 1, mHelper.reboundTabs);
+            assertEquals(Collections.<Object>singletonList("payload"), mHelper.lastPayloads);
+            assertEquals("created tabs", 0, mHelper.createdTabs);
+            assertEquals("executed tab updates", 0, mMetrics.executedUpdates);
+            assertEquals("tab updates", 0, mMetrics.tabsUpdates);
+            assertEquals("measured tabs", 0, mMetrics.measuredTabs);
+            assertEquals("tab mode adjustments", 1, mMetrics.tabModeAdjustments);
+
+            tearDownHelper();
+        }
+    }
+
+    @Test
+    public void notifyTabChangedAdjustsTabMode() {
+        final int tabCount = TAB_COUNTS[0];
+        setUpHelper(tabCount, false, true);
+        assertEquals(TabLayout.MODE_FIXED, mTabLayout.getTabMode());
+
+        StringBuilder longTitle = new StringBuilder();
+        for (int i = 0; i < WIDE_WIDTH / tabCount; i++) {
+            longTitle.append("Long title ");
+        }
+        mTabLayout.getTabAt(tabCount / 2).setText(longTitle);
+        mHelper.notifyTabChanged(tabCount / 2);
+        final int pendingRunnables = pendingRunnables();
+        mHelper.notifyTabChanged(tabCount / 2 + 1);
+        assertEquals("posted runnables", pendingRunnables, pendingRunnables());
+        idle();
+
+        assertEquals("measured tabs", 1, mMetrics.measuredTabs);
+        assertEquals("tab mode adjustments", 1, mMetrics.tabModeAdjustments);
+        assertTabModeAdjusted("long title", TabLayout.MODE_SCROLLABLE);
+
+        tearDownHelper();
+    }
+
+    @Test
+    public void widthChangesAreMemoized() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpHelper(tabCount, false, true);
+
+            setContainerWidth(NARROW_WIDTH);
+            assertBudget("measured tabs (first narrow)", tabCount, mMetrics.measuredTabs);
+            assertAtLeast("measured tabs (first narrow)", 1, mMetrics.measuredTabs);
+            assertTabModeAdjusted("first narrow", expectedTabMode(tabCount, NARROW_WIDTH));
+            resetCounters();
+
+            setContainerWidth(WIDE_WIDTH);
+            assertEquals("measured tabs (back to wide)", 0, mMetrics.measuredTabs);
+            assertTabModeAdjusted("back to wide", expectedTabMode(tabCount, WIDE_WIDTH));
+            resetCounters();
+
+            setContainerWidth(NARROW_WIDTH);
+            assertEquals("measured tabs (back to narrow)", 0, mMetrics.measuredTabs);
+            assertTabModeAdjusted("back to narrow", expectedTabMode(tabCount, NARROW_WIDTH));
+
+            assertEquals("created tabs", 0, mHelper.createdTabs);
+
+            tearDownHelper();
+        }
+    }
+
+    @Test
+    public void unchangedTabModeDoesNotRequestLayout() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpHelper(tabCount, false, true);
+
+            mHelper.setAutoAdjustTabModeEnabled(false);
+            mHelper.setAutoAdjustTabModeEnabled(true);
+            idle();
+
+            assertEquals("tab mode adjustments", 1, mMetrics.tabModeAdjustments);
+            assertEquals(mTabLayout.getTabMode(), mMetrics.lastTabMode);
+            assertEquals("measured tabs", 0, mMetrics.measuredTabs);
+            assertEquals("layout requests", 0, mTabLayout.requestLayoutCount);
+
+            tearDownHelper();
+        }
+    }
+
+    @Test
+    public void programmaticPageChangeDoesNotRebuildTabs() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpHelper(tabCount, false, true);
+
+            mViewPager.setCurrentItem(tabCount / 2, false);
+            idle();
+
+            assertEquals(tabCount / 2, mTabLayout.getSelectedTabPosition());
+            assertEquals("executed tab updates", 0, mMetrics.executedUpdates);
+            assertEquals("tab updates", 0, mMetrics.tabsUpdates);
+            assertEquals("created tabs", 0, mHelper.createdTabs);
+
+            tearDownHelper();
+        }
+    }
+
+    @Test
+    public void titlesOverPrecomputationCapAreNotPrecomputed() {
+        final int tabCount = TabTitlePrecomputer.MAX_PRECOMPUTED_TITLES + 1;
+        setUpHelper(tabCount, false, true);
+        mHelper.setTabTitlePrecomputationEnabled(true);
+
+        mAdapter.notifyDataSetChanged();
+        idle();
+
+        // tabs are updated right away, instead of waiting for titles the cache could not hold
+        assertEquals("executed tab updates", 1, mMetrics.executedUpdates);
+        assertEquals(tabCount, mTabLayout.getTabCount());
+
+        tearDownHelper();
+    }
+
+    @Test
+    public void disableTitlePrecomputationAfterRelease() {
+        setUpHelper(TAB_COUNTS[0], false, true);
+        mHelper.setTabTitlePrecomputationEnabled(true);
+
+        mHelper.release();
+        mHelper.setTabTitlePrecomputationEnabled(false);
+        mHelper = null;
+        idle();
+    }
+
+    @Test
+    public void virtualTabsAreBoundInPlace() {
+        for (int tabCount : TAB_COUNTS) {
+            setUpHelper(tabCount, false, false);
+            mHelper.setTabVirtualizationEnabled(true);
+            mViewPager.setCurrentItem(tabCount / 2, false);
+            idle();
+
+            final List<TabLayout.Tab> tabs = getTabs();
+            final TabLayout.Tab selectedTab = mTabLayout.getTabAt(tabCount / 2);
+            final CountingOnTabSelectedListener selection = new CountingOnTabSelectedListener();
+            mTabLayout.addOnTabSelectedListener(selection);
+            resetCounters();
+
+            mTabLayout.scrollTo(0, 0);
+            idle();
+            mAdapter.notifyDataSetChanged();
+            idle();
+
+            assertEquals(tabs, getTabs());
+            assertEquals(selectedTab, mTabLayout.getTabAt(mTabLayout.getSelectedTabPosition()));
+            assertEquals("Page " + (tabCount / 2), selectedTab.getText());
+            assertEquals("created tabs", 0, mHelper.createdTabs);
+            assertEquals("selection events", 0, selection.events);
+
+            mTabLayout.removeOnTabSelectedListener(selection);
+            tearDownHelper();
+        }
+    }
+
+    //
+    // utilities
+    //
+
+    private void setUpViews() {
+        Context context = new ContextThemeWrapper(mActivity, R.style.Theme_AppCompat_Light);
+
+        mContainer = new FrameLayout(context);
+
+        LinearLayout root = new LinearLayout(context);
+        root.setOrientation(LinearLayout.VERTICAL);
+
+        mTabLayout = new CountingTabLayout(context);
+        mViewPager = new ViewPager(context);
+
+        root.addView(mTabLayout, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        root.addView(mViewPager, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0, 1.0f));
+        mContainer.addView(root, new FrameLayout.LayoutParams(WIDE_WIDTH, ViewGroup.LayoutParams.MATCH_PARENT));
+
+        mActivity.setContentView(mContainer);
+        idle();
+    }
+
+    private void setUpHelper(int tabCount, boolean reconciliation, boolean autoAdjustTabMode) {
+        setUpViews();
+
+        mAdapter = new TestPagerAdapter(tabCount);
+        mViewPager.setAdapter(mAdapter);
+
+        mHelper = new CountingTabLayoutHelper(mTabLayout, mViewPager);
+        mMetrics = new CountingMetricsListener();
+        mHelper.setMetricsListener(mMetrics);
+        mHelper.setTabReconciliationEnabled(reconciliation);
+        mHelper.setAutoAdjustTabModeEnabled(autoAdjustTabMode);
+        idle();
+
+        resetCounters();
+    }
+
+    private void tearDownHelper() {
+        mHelper.release();
+        mHelper = null;
+        idle();
+    }
+
+    private void setContainerWidth(int width) {
+        View root = mContainer.getChildAt(0);
+        root.getLayoutParams().width = width;
+        root.requestLayout();
+        idle();
+    }
+
+    private void resetCounters() {
+        mHelper.createdTabs = 0;
+        mHelper.reboundTabs = 0;
+        mHelper.lastPayloads = null;
+        mMetrics.reset();
+        mTabLayout.requestLayoutCount = 0;
+    }
+
+    private List<TabLayout.Tab> getTabs() {
+        List<TabLayout.Tab> tabs = new ArrayList<>(mTabLayout.getTabCount());
+        for (int i = 0; i < mTabLayout.getTabCount(); i++) {
+            tabs.add(mTabLayout.getTabAt(i));
+        }
+        return tabs;
+    }
+
+    private void assertTabModeAdjusted(String what, int tabMode) {
+        assertAtLeast("tab mode adjustments (" + what + ")", 1, mMetrics.tabModeAdjustments);
+        assertEquals("adjusted tab mode (" + what + ")", tabMode, mMetrics.lastTabMode);
+        assertEquals("tab mode (" + what + ")", tabMode, mTabLayout.getTabMode());
+    }
+
+    private static int expectedTabMode(int tabCount, int width) {
+        // "Page n" tabs are as wide as the minimum width of scrollable tabs (72dp at density 1.0),
+        // which is also less than width / tabCount when they fit
+        return (tabCount * SCROLLABLE_TAB_MIN_WIDTH < width) ? TabLayout.MODE_FIXED : TabLayout.MODE_SCROLLABLE;
+    }
+
+    private static void idle() {
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private static int pendingRunnables() {
+        // NOTE: includes View.postOnAnimation() callbacks, Choreographer posts them to the main looper
+        return ShadowLooper.getShadowMainLooper().getScheduler().size();
+    }
+
+    private static void assertBudget(String what, int budget, int actual) {
+        if (actual > budget) {
+            fail(what + ": " + actual + " (budget: " + budget + ")");
+        }
+    }
+
+    private static void assertAtLeast(String what, int min, int actual) {
+        if (actual < min) {
+            fail(what + ": " + actual + " (at least: " + min + ")");
+        }
+    }
+
+    static class CountingTabLayout extends TabLayout {
+        int requestLayoutCount;
+
+        CountingTabLayout(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void requestLayout() {
+            requestLayoutCount++;
+            super.requestLayout();
+        }
+    }
+
+    static class CountingTabLayoutHelper extends TabLayoutHelper {
+        // NOTE: no initializers; these are incremented while the super constructor creates tabs
+        int createdTabs;
+        int reboundTabs;
+        List<Object> lastPayloads;
+
+        CountingTabLayoutHelper(TabLayout tabLayout, ViewPager viewPager) {
+            super(tabLayout, viewPager);
+        }
+
+        @Override
+        protected TabLayout.Tab onCreateTab(TabLayout tabLayout, PagerAdapter adapter, int position) {
+            createdTabs++;
+            return super.onCreateTab(tabLayout, adapter, position);
+        }
+
+        @Override
+        protected void onUpdateTab(TabLayout.Tab tab, @NonNull List<Object> payloads) {
+            reboundTabs++;
+            lastPayloads = payloads;
+            super.onUpdateTab(tab, payloads);
+        }
+    }
+
+    static class CountingOnTabSelectedListener implements TabLayout.OnTabSelectedListener {
+        int events;
+
+        @Override
+        public void onTabSelected(TabLayout.Tab tab) {
+            events++;
+        }
+
+        @Override
+        public void onTabUnselected(TabLayout.Tab tab) {
+            events++;
+        }
+
+        @Override
+        public void onTabReselected(TabLayout.Tab tab) {
+            events++;
+        }
+    }
+
+    static class CountingMetricsListener extends TabLayoutHelper.SimpleMetricsListener {
+        int tabsUpdates;
+        int coalescedUpdates;
+        int executedUpdates;
+        int measuredTabs;
+        int tabModeAdjustments;
+        int lastTabMode = -1;
+
+        void reset() {
+            tabsUpdates = 0;
+            coalescedUpdates = 0;
+            executedUpdates = 0;
+            measuredTabs = 0;
+            tabModeAdjustments = 0;
+            lastTabMode = -1;
+        }
+
+        @Override
+        public void onTabsUpdated(int tabCount, long durationNanos) {
+            tabsUpdates++;
+        }
+
+        @Override
+        public void onTabsUpdateCoalesced() {
+            coalescedUpdates++;
+        }
+
+        @Override
+        public void onTabsUpdateExecuted() {
+            executedUpdates++;
+        }
+
+        @Override
+        public void onTabModeDetermined(int tabCount, int measureCount, long durationNanos) {
+            measuredTabs += measureCount;
+        }
+
+        @Override
+        public void onTabModeAdjusted(int tabMode) {
+            tabModeAdjustments++;
+            lastTabMode = tabMode;
+        }
+    }
+}
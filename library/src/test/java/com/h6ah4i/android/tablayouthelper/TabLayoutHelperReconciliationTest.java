@@ -0,0 +1,121 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.viewpager.widget.ViewPager;
+
+import com.google.android.material.tabs.TabLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that tabs kept by tab reconciliation reflect the current contents of their pages.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TabLayoutHelperReconciliationTest {
+    private static final int TAB_COUNT = 5;
+
+    private TabLayout mTabLayout;
+    private TestPagerAdapter mAdapter;
+    private TabLayoutHelper mHelper;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        Context context = new ContextThemeWrapper(activity, R.style.Theme_AppCompat_Light);
+
+        mTabLayout = new TabLayout(context);
+        activity.setContentView(mTabLayout);
+
+        ViewPager viewPager = new ViewPager(context);
+        mAdapter = new TestPagerAdapter(TAB_COUNT);
+        viewPager.setAdapter(mAdapter);
+
+        mHelper = new TabLayoutHelper(mTabLayout, viewPager);
+        mHelper.setTabReconciliationEnabled(true);
+        idle();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.release();
+    }
+
+    @Test
+    public void renamedPageKeepsTabAndUpdatesText() {
+        TabLayout.Tab tab = mTabLayout.getTabAt(2);
+
+        mAdapter.setPageTitle(2, "Renamed");
+        mAdapter.notifyDataSetChanged();
+        idle();
+
+        assertSame(tab, mTabLayout.getTabAt(2));
+        assertSame(tab, mHelper.findTabById(mAdapter.getTabId(2)));
+        assertEquals("Renamed", String.valueOf(tab.getText()));
+        assertEquals("Renamed", getDisplayedText(2));
+    }
+
+    @Test
+    public void renamedAndMovedPageUpdatesText() {
+        mAdapter.movePage(0, 3);
+        mAdapter.setPageTitle(3, "Moved");
+        mAdapter.notifyDataSetChanged();
+        idle();
+
+        assertEquals(TAB_COUNT, mTabLayout.getTabCount());
+        for (int i = 0; i < TAB_COUNT; i++) {
+            assertEquals(String.valueOf(mAdapter.getPageTitle(i)), String.valueOf(mTabLayout.getTabAt(i).getText()));
+            assertEquals(String.valueOf(mAdapter.getPageTitle(i)), getDisplayedText(i));
+        }
+    }
+
+    private String getDisplayedText(int position) {
+        ViewGroup tabView = (ViewGroup) ((ViewGroup) mTabLayout.getChildAt(0)).getChildAt(position);
+        TextView textView = null;
+        for (int i = 0; i < tabView.getChildCount() && textView == null; i++) {
+            View child = tabView.getChildAt(i);
+            if (child instanceof TextView && child.getVisibility() == View.VISIBLE) {
+                textView = (TextView) child;
+            }
+        }
+        assertNotNull(textView);
+        return String.valueOf(textView.getText());
+    }
+
+    private static void idle() {
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.google.android.material.tabs.TabLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that measuring tabs in {@link TabLayout#MODE_FIXED} via the minimum tab width read from
+ * TabLayout gives the same result as switching to {@link TabLayout#MODE_SCROLLABLE} and measuring.
+ *
+ * The minimum width is read from private fields of the material components library, so this test
+ * fails if an upgrade changes their names or meanings.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TabModeResolverTest {
+    private static final int[] WIDTHS = {320, 480, 720, 1080};
+    private static final int[] TAB_COUNTS = {1, 2, 4, 8, 16};
+
+    private Activity mActivity;
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mContext = new ContextThemeWrapper(mActivity, R.style.Theme_AppCompat_Light);
+    }
+
+    @Test
+    public void fixedModeCanBeMeasuredInPlace() {
+        TabLayout tabLayout = setUpTabLayout(WIDTHS[0], TAB_COUNTS[0]);
+
+        assertTrue(new TabModeResolver().canMeasureInPlace(tabLayout));
+    }
+
+    @Test
+    public void inPlaceMeasurementMatchesSwitchAndMeasure() {
+        for (int width : WIDTHS) {
+            for (int tabCount : TAB_COUNTS) {
+                String what = "width = " + width + ", tabs = " + tabCount;
+                TabLayout tabLayout = setUpTabLayout(width, tabCount);
+
+                // in place
+                TabModeResolver inPlace = new TabModeResolver();
+                int inPlaceTabMode = inPlace.determineTabMode(tabLayout);
+                assertEquals(what, TabLayout.MODE_FIXED, tabLayout.getTabMode());
+
+                // switch and measure
+                tabLayout.setTabMode(TabLayout.MODE_SCROLLABLE);
+                tabLayout.setTabGravity(TabLayout.GRAVITY_CENTER);
+                TabModeResolver switched = new TabModeResolver();
+                int switchedTabMode = switched.determineTabMode(tabLayout);
+
+                assertEquals(what, switchedTabMode, inPlaceTabMode);
+                for (int i = 0; i < tabCount; i++) {
+                    TabLayout.Tab tab = tabLayout.getTabAt(i);
+                    assertEquals(what + ", tab = " + i,
+                            switched.getTabWidthCache().get(tab), inPlace.getTabWidthCache().get(tab));
+                }
+            }
+        }
+    }
+
+    private TabLayout setUpTabLayout(int width, int tabCount) {
+        FrameLayout container = new FrameLayout(mContext);
+        TabLayout tabLayout = new TabLayout(mContext);
+
+        tabLayout.setTabMode(TabLayout.MODE_FIXED);
+        tabLayout.setTabGravity(TabLayout.GRAVITY_FILL);
+        for (int i = 0; i < tabCount; i++) {
+            // titles of different lengths, so the widest tab decides in some cases
+            tabLayout.addTab(tabLayout.newTab().setText((i % 3 == 0) ? "Tab " + i : "A longer tab title " + i));
+        }
+
+        container.addView(tabLayout, new FrameLayout.LayoutParams(width, ViewGroup.LayoutParams.WRAP_CONTENT));
+        mActivity.setContentView(container);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        return tabLayout;
+    }
+}
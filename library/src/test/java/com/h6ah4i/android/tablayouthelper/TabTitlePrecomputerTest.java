@@ -0,0 +1,152 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.text.TextPaint;
+
+import androidx.core.text.PrecomputedTextCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TabTitlePrecomputerTest {
+    private QueuedExecutor mExecutor;
+    private TabTitlePrecomputer mPrecomputer;
+    private int mCompleteCount;
+    private final Runnable mOnComplete = new Runnable() {
+        @Override
+        public void run() {
+            mCompleteCount++;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mExecutor = new QueuedExecutor();
+        mPrecomputer = new TabTitlePrecomputer(mExecutor);
+        mPrecomputer.setParams(new PrecomputedTextCompat.Params.Builder(new TextPaint()).build());
+    }
+
+    @Test
+    public void onlyMissingTitlesArePrecomputed() {
+        assertTrue(mPrecomputer.precompute(titles("A", "B"), mOnComplete));
+        assertTrue(mPrecomputer.isRunning());
+        finishTasks();
+
+        assertEquals(1, mCompleteCount);
+        assertFalse(mPrecomputer.isRunning());
+        assertFalse(mPrecomputer.precompute(titles("A", "B", ""), mOnComplete));
+        assertTrue(mPrecomputer.precompute(titles("A", "C"), mOnComplete));
+    }
+
+    @Test
+    public void cancelledTaskDoesNotComplete() {
+        assertTrue(mPrecomputer.precompute(titles("A"), mOnComplete));
+        mPrecomputer.cancel();
+        assertFalse(mPrecomputer.isRunning());
+        finishTasks();
+
+        assertEquals(0, mCompleteCount);
+        // not remembered as precomputed
+        assertTrue(mPrecomputer.precompute(titles("A"), mOnComplete));
+    }
+
+    @Test
+    public void cancelledTaskDoesNotCompleteNewOne() {
+        assertTrue(mPrecomputer.precompute(titles("A"), mOnComplete));
+        mPrecomputer.cancel();
+        assertTrue(mPrecomputer.precompute(titles("B"), mOnComplete));
+
+        // the cancelled task finishes first
+        mExecutor.runNext();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(0, mCompleteCount);
+        assertTrue(mPrecomputer.isRunning());
+
+        finishTasks();
+        assertEquals(1, mCompleteCount);
+    }
+
+    @Test
+    public void rememberedTitlesAreBounded() {
+        List<CharSequence> titles = new ArrayList<>();
+        for (int i = 0; i <= TabTitlePrecomputer.MAX_PRECOMPUTED_TITLES; i++) {
+            titles.add("Title " + i);
+        }
+        assertTrue(mPrecomputer.precompute(titles, mOnComplete));
+        finishTasks();
+
+        // the least recently used one has been forgotten
+        assertFalse(mPrecomputer.precompute(titles.subList(1, titles.size()), mOnComplete));
+        assertTrue(mPrecomputer.precompute(titles.subList(0, 1), mOnComplete));
+    }
+
+    @Test
+    public void paramsChangeForgetsTitles() {
+        assertTrue(mPrecomputer.precompute(titles("A"), mOnComplete));
+        finishTasks();
+
+        TextPaint paint = new TextPaint();
+        paint.setTextSize(100);
+        mPrecomputer.setParams(new PrecomputedTextCompat.Params.Builder(paint).build());
+
+        assertTrue(mPrecomputer.precompute(titles("A"), mOnComplete));
+    }
+
+    private void finishTasks() {
+        while (mExecutor.runNext()) {
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        }
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private static List<CharSequence> titles(CharSequence... titles) {
+        return Arrays.asList(titles);
+    }
+
+    private static class QueuedExecutor implements Executor {
+        private final ArrayList<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            mTasks.add(task);
+        }
+
+        boolean runNext() {
+            if (mTasks.isEmpty()) {
+                return false;
+            }
+            mTasks.remove(0).run();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.app.Activity;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TabViewPoolTest {
+    private Activity mActivity;
+    private TabViewPool mPool;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mPool = new TabViewPool(4);
+    }
+
+    @Test
+    public void viewsAreReusedForTheSameViewTypeOnly() {
+        View view0 = createView(0);
+        View view1 = createView(1);
+
+        assertTrue(mPool.release(view0));
+        assertTrue(mPool.release(view1));
+
+        assertEquals(2, mPool.size());
+        assertNull(mPool.obtain(2));
+        assertSame(view1, mPool.obtain(1));
+        assertNull(mPool.obtain(1));
+        assertSame(view0, mPool.obtain(0));
+        assertEquals(0, mPool.size());
+    }
+
+    @Test
+    public void unregisteredViewsAreNotPooled() {
+        View view = new View(mActivity);
+
+        assertFalse(mPool.release(view));
+
+        mPool.setViewType(view, 0);
+        mPool.setViewType(view, TabViewPool.NO_VIEW_TYPE);
+        assertFalse(mPool.release(view));
+        assertEquals(0, mPool.size());
+    }
+
+    @Test
+    public void maxSizeCoversAllViewTypes() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(mPool.release(createView(i % 2)));
+        }
+        assertFalse(mPool.release(createView(2)));
+
+        mPool.setMaxSize(1);
+
+        assertEquals(1, mPool.size());
+        assertEquals(1, mPool.size(0) + mPool.size(1));
+    }
+
+    private View createView(int viewType) {
+        View view = new View(mActivity);
+        mPool.setViewType(view, viewType);
+        return view;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.content.res.Configuration;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+import static com.h6ah4i.android.tablayouthelper.TabModeDecisionEngine.MODE_FIXED;
+import static com.h6ah4i.android.tablayouthelper.TabModeDecisionEngine.MODE_SCROLLABLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TabWidthCacheTest {
+    private static final int PORTRAIT_WIDTH = 480;
+    private static final int LANDSCAPE_WIDTH = 800;
+    private static final int HEIGHT_MEASURE_SPEC = View.MeasureSpec.makeMeasureSpec(48, View.MeasureSpec.EXACTLY);
+
+    // 8 tabs of 72px fit in landscape only
+    private static final int[] TAB_WIDTHS = {72, 72, 72, 72, 72, 72, 72, 72};
+
+    private final TabWidthCache mCache = new TabWidthCache();
+    private final TabModeDecisionEngine mEngine = new TabModeDecisionEngine();
+
+    @Test
+    public void rotationKeepsMemoizedDecisions() {
+        Configuration portrait = createConfiguration();
+        Configuration landscape = rotate(portrait);
+
+        assertEquals(MODE_SCROLLABLE, determine(portrait, PORTRAIT_WIDTH));
+        assertEquals(MODE_FIXED, determine(landscape, LANDSCAPE_WIDTH));
+
+        // back and forth again, both decisions are memo hits
+        for (int i = 0; i < 2; i++) {
+            assertEquals(MODE_SCROLLABLE, findMemoized(portrait, PORTRAIT_WIDTH));
+            assertEquals(MODE_FIXED, findMemoized(landscape, LANDSCAPE_WIDTH));
+        }
+    }
+
+    @Test
+    public void textMetricsChangesInvalidateMemoizedDecisions() {
+        Configuration base = createConfiguration();
+        assertEquals(MODE_SCROLLABLE, determine(base, PORTRAIT_WIDTH));
+
+        Configuration fontScale = new Configuration(base);
+        fontScale.fontScale = 1.3f;
+        assertNoMemoHit(fontScale);
+
+        Configuration density = new Configuration(base);
+        density.densityDpi = 320;
+        assertNoMemoHit(density);
+
+        Configuration locale = new Configuration(base);
+        locale.setLocale(Locale.JAPANESE);
+        assertNoMemoHit(locale);
+    }
+
+    private void assertNoMemoHit(Configuration configuration) {
+        int generation = mCache.getContentGeneration();
+        mCache.setMeasureConditions(configuration, PORTRAIT_WIDTH, HEIGHT_MEASURE_SPEC);
+
+        assertNotEquals(generation, mCache.getContentGeneration());
+        assertEquals(TabModeDecisionEngine.NO_TAB_MODE,
+                mEngine.findMemoizedTabMode(PORTRAIT_WIDTH, mCache.getContentGeneration()));
+    }
+
+    private int determine(Configuration configuration, int width) {
+        mCache.setMeasureConditions(configuration, width, HEIGHT_MEASURE_SPEC);
+        return mEngine.determineTabMode(width, TAB_WIDTHS, TAB_WIDTHS.length, mCache.getContentGeneration());
+    }
+
+    private int findMemoized(Configuration configuration, int width) {
+        mCache.setMeasureConditions(configuration, width, HEIGHT_MEASURE_SPEC);
+        return mEngine.findMemoizedTabMode(width, mCache.getContentGeneration());
+    }
+
+    private static Configuration createConfiguration() {
+        Configuration configuration = new Configuration();
+        configuration.setToDefaults();
+        configuration.setLocale(Locale.US);
+        configuration.densityDpi = 160;
+        configuration.orientation = Configuration.ORIENTATION_PORTRAIT;
+        configuration.screenWidthDp = PORTRAIT_WIDTH;
+        configuration.screenHeightDp = LANDSCAPE_WIDTH;
+        return configuration;
+    }
+
+    private static Configuration rotate(Configuration configuration) {
+        Configuration rotated = new Configuration(configuration);
+        rotated.orientation = Configuration.ORIENTATION_LANDSCAPE;
+        rotated.screenWidthDp = configuration.screenHeightDp;
+        rotated.screenHeightDp = configuration.screenWidthDp;
+        rotated.smallestScreenWidthDp = Math.min(rotated.screenWidthDp, rotated.screenHeightDp);
+        return rotated;
+    }
+}
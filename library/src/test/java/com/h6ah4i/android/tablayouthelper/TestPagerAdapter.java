@@ -0,0 +1,97 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.viewpager.widget.PagerAdapter;
+
+import java.util.ArrayList;
+
+/**
+ * Pager adapter for tests. Pages are titled "Page n", and have stable IDs which survive moves.
+ */
+class TestPagerAdapter extends PagerAdapter implements TabLayoutHelper.TabIdProvider {
+    private final ArrayList<String> mTitles = new ArrayList<>();
+    private final ArrayList<Long> mIds = new ArrayList<>();
+    private int mNextId;
+
+    TestPagerAdapter(int count) {
+        for (int i = 0; i < count; i++) {
+            addPage();
+        }
+    }
+
+    void addPage() {
+        mIds.add((long) mNextId);
+        mTitles.add("Page " + (mNextId++));
+    }
+
+    void removePage(int position) {
+        mIds.remove(position);
+        mTitles.remove(position);
+    }
+
+    void movePage(int fromPosition, int toPosition) {
+        mIds.add(toPosition, mIds.remove(fromPosition));
+        mTitles.add(toPosition, mTitles.remove(fromPosition));
+    }
+
+    void setPageTitle(int position, String title) {
+        mTitles.set(position, title);
+    }
+
+    @Override
+    public long getTabId(int position) {
+        return mIds.get(position);
+    }
+
+    @Override
+    public int getCount() {
+        return mTitles.size();
+    }
+
+    @Override
+    public CharSequence getPageTitle(int position) {
+        return mTitles.get(position);
+    }
+
+    @Override
+    public int getItemPosition(@NonNull Object object) {
+        return POSITION_NONE;
+    }
+
+    @NonNull
+    @Override
+    public Object instantiateItem(@NonNull ViewGroup container, int position) {
+        View view = new View(container.getContext());
+        container.addView(view);
+        return view;
+    }
+
+    @Override
+    public void destroyItem(@NonNull ViewGroup container, int position, @NonNull Object object) {
+        container.removeView((View) object);
+    }
+
+    @Override
+    public boolean isViewFromObject(@NonNull View view, @NonNull Object object) {
+        return view == object;
+    }
+}
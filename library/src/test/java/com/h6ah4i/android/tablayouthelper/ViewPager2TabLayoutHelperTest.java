@@ -0,0 +1,305 @@
+/*
+ *    Copyright (C) 2015 Haruki Hasegawa
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.h6ah4i.android.tablayouthelper;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
+
+import com.google.android.material.tabs.TabLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that each change notification of the adapter is applied to the affected tabs only,
+ * and that the selected tab and the current page are kept in sync.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ViewPager2TabLayoutHelperTest {
+    private static final int TAB_COUNT = 10;
+
+    private TabLayout mTabLayout;
+    private ViewPager2 mViewPager;
+    private TestAdapter mAdapter;
+    private CountingTabConfigurationStrategy mStrategy;
+    private ViewPager2TabLayoutHelper mHelper;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        Context context = new ContextThemeWrapper(activity, R.style.Theme_AppCompat_Light);
+
+        LinearLayout root = new LinearLayout(context);
+        root.setOrientation(LinearLayout.VERTICAL);
+
+        mTabLayout = new TabLayout(context);
+        mViewPager = new ViewPager2(context);
+        mAdapter = new TestAdapter(TAB_COUNT);
+        mViewPager.setAdapter(mAdapter);
+
+        root.addView(mTabLayout, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        root.addView(mViewPager, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0, 1.0f));
+        activity.setContentView(root);
+        idle();
+
+        mStrategy = new CountingTabConfigurationStrategy(mAdapter);
+        mHelper = new ViewPager2TabLayoutHelper(mTabLayout, mViewPager, mStrategy);
+        idle();
+        mStrategy.configuredPositions.clear();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.release();
+        idle();
+    }
+
+    @Test
+    public void initialTabs() {
+        assertTabsMatchAdapter();
+        assertEquals(0, mTabLayout.getSelectedTabPosition());
+    }
+
+    @Test
+    public void insertCreatesInsertedTabOnly() {
+        List<TabLayout.Tab> tabs = getTabs();
+
+        mAdapter.insertPage(3);
+        idle();
+
+        assertTabsMatchAdapter();
+        assertEquals(singletonPositions(3), mStrategy.configuredPositions);
+        tabs.add(3, mTabLayout.getTabAt(3));
+        assertTabsSame(tabs);
+    }
+
+    @Test
+    public void removeRemovesRemovedTabOnly() {
+        List<TabLayout.Tab> tabs = getTabs();
+
+        mAdapter.removePage(3);
+        idle();
+
+        assertTabsMatchAdapter();
+        assertTrue(mStrategy.configuredPositions.isEmpty());
+        tabs.remove(3);
+        assertTabsSame(tabs);
+    }
+
+    @Test
+    public void moveCarriesContentsOver() {
+        mAdapter.movePage(2, 7);
+        idle();
+
+        assertTabsMatchAdapter();
+        assertTrue(mStrategy.configuredPositions.isEmpty());
+    }
+
+    @Test
+    public void moveKeepsSelectionInSync() {
+        selectPage(2);
+
+        mAdapter.movePage(2, 7);
+        idle();
+
+        assertTabsMatchAdapter();
+        assertEquals(mViewPager.getCurrentItem(), mTabLayout.getSelectedTabPosition());
+    }
+
+    @Test
+    public void changeReconfiguresChangedTabInPlace() {
+        List<TabLayout.Tab> tabs = getTabs();
+
+        mAdapter.setPageTitle(5, "Changed");
+        idle();
+
+        assertTabsMatchAdapter();
+        assertEquals(singletonPositions(5), mStrategy.configuredPositions);
+        assertTabsSame(tabs);
+    }
+
+    @Test
+    public void dataSetChangesInFrameAreCoalesced() {
+        for (int i = 0; i < 10; i++) {
+            mAdapter.notifyDataSetChanged();
+        }
+        idle();
+
+        assertTabsMatchAdapter();
+        assertEquals(TAB_COUNT, mStrategy.configuredPositions.size());
+    }
+
+    @Test
+    public void pageChangeSelectsTab() {
+        selectPage(6);
+
+        assertEquals(6, mTabLayout.getSelectedTabPosition());
+    }
+
+    @Test
+    public void tabSelectionChangesPage() {
+        mTabLayout.getTabAt(4).select();
+        idle();
+
+        assertEquals(4, mViewPager.getCurrentItem());
+        assertEquals(4, mTabLayout.getSelectedTabPosition());
+    }
+
+    @Test
+    public void farTabSelectionJumpsToPage() {
+        mHelper.setSmoothScrollDistanceThreshold(1);
+
+        mTabLayout.getTabAt(TAB_COUNT - 1).select();
+
+        // NOTE: a smooth scroll would leave the pager settling
+        assertEquals(TAB_COUNT - 1, mViewPager.getCurrentItem());
+        assertEquals(ViewPager2.SCROLL_STATE_IDLE, mViewPager.getScrollState());
+    }
+
+    //
+    // utilities
+    //
+
+    private void selectPage(int position) {
+        mViewPager.setCurrentItem(position, false);
+        idle();
+    }
+
+    private void assertTabsMatchAdapter() {
+        assertEquals(mAdapter.getItemCount(), mTabLayout.getTabCount());
+        for (int i = 0; i < mAdapter.getItemCount(); i++) {
+            assertEquals("tab " + i, mAdapter.getPageTitle(i), mTabLayout.getTabAt(i).getText());
+        }
+    }
+
+    private void assertTabsSame(List<TabLayout.Tab> tabs) {
+        assertEquals(tabs.size(), mTabLayout.getTabCount());
+        for (int i = 0; i < tabs.size(); i++) {
+            assertSame("tab " + i, tabs.get(i), mTabLayout.getTabAt(i));
+        }
+    }
+
+    private List<TabLayout.Tab> getTabs() {
+        List<TabLayout.Tab> tabs = new ArrayList<>(mTabLayout.getTabCount());
+        for (int i = 0; i < mTabLayout.getTabCount(); i++) {
+            tabs.add(mTabLayout.getTabAt(i));
+        }
+        return tabs;
+    }
+
+    private static List<Integer> singletonPositions(int position) {
+        List<Integer> positions = new ArrayList<>();
+        positions.add(position);
+        return positions;
+    }
+
+    private static void idle() {
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    static class TestAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        private final ArrayList<String> mTitles = new ArrayList<>();
+        private int mNextId;
+
+        TestAdapter(int count) {
+            for (int i = 0; i < count; i++) {
+                mTitles.add("Page " + (mNextId++));
+            }
+        }
+
+        String getPageTitle(int position) {
+            return mTitles.get(position);
+        }
+
+        void insertPage(int position) {
+            mTitles.add(position, "Page " + (mNextId++));
+            notifyItemInserted(position);
+        }
+
+        void removePage(int position) {
+            mTitles.remove(position);
+            notifyItemRemoved(position);
+        }
+
+        void movePage(int fromPosition, int toPosition) {
+            mTitles.add(toPosition, mTitles.remove(fromPosition));
+            notifyItemMoved(fromPosition, toPosition);
+        }
+
+        void setPageTitle(int position, String title) {
+            mTitles.set(position, title);
+            notifyItemChanged(position);
+        }
+
+        @Override
+        public int getItemCount() {
+            return mTitles.size();
+        }
+
+        @NonNull
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = new View(parent.getContext());
+            view.setLayoutParams(new ViewGroup.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        }
+    }
+
+    static class CountingTabConfigurationStrategy implements ViewPager2TabLayoutHelper.TabConfigurationStrategy {
+        final List<Integer> configuredPositions = new ArrayList<>();
+        private final TestAdapter mAdapter;
+
+        CountingTabConfigurationStrategy(TestAdapter adapter) {
+            mAdapter = adapter;
+        }
+
+        @Override
+        public void onConfigureTab(@NonNull TabLayout.Tab tab, int position) {
+            configuredPositions.add(position);
+            tab.setText(mAdapter.getPageTitle(position));
+        }
+    }
+}